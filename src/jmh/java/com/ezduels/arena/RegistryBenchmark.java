@@ -0,0 +1,133 @@
+package com.ezduels.arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares the binary arena registry with the arenas.yml path on synthetic arenas:
+ * loading every arena, and saving after one arena changed (a whole-file YAML rewrite
+ * against a single appended record). Only touches temp files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int arenas;
+
+    private List<ArenaRecord> records;
+    private File directory;
+    private File yamlFile;
+    private File binaryFile;
+    private File appendFile;
+    private DataOutputStream append;
+    private Logger logger;
+
+    @Setup
+    public void setUp() throws IOException {
+        records = generate(arenas);
+        directory = Files.createTempDirectory("ezduels-registry").toFile();
+        yamlFile = new File(directory, "arenas.yml");
+        binaryFile = new File(directory, "arenas.dat");
+        appendFile = new File(directory, "append.dat");
+        logger = Logger.getAnonymousLogger();
+        ArenaRegistry.writeYaml(yamlFile, records);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile)))) {
+            ArenaRegistry.writeHeader(out);
+            for (ArenaRecord record : records) {
+                ArenaRegistry.writeRecord(out, record);
+            }
+        }
+    }
+
+    /**
+     * Appends go to their own log, reopened every iteration as the registry keeps it open
+     */
+    @Setup(Level.Iteration)
+    public void openAppend() throws IOException {
+        append = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(appendFile)));
+        ArenaRegistry.writeHeader(append);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeAppend() throws IOException {
+        append.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        yamlFile.delete();
+        binaryFile.delete();
+        appendFile.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<ArenaRecord> yamlLoad() throws IOException {
+        return ArenaRegistry.readYaml(yamlFile);
+    }
+
+    @Benchmark
+    public Map<String, ArenaRecord> binaryLoad() {
+        return ArenaRegistry.readLog(binaryFile, logger).records();
+    }
+
+    @Benchmark
+    public void yamlSave() throws IOException {
+        ArenaRegistry.writeYaml(yamlFile, records);
+    }
+
+    /**
+     * What ArenaRegistry.put does for one changed arena: append its record and flush
+     */
+    @Benchmark
+    public void binarySave() throws IOException {
+        ArenaRegistry.writeRecord(append, records.get(0));
+        append.flush();
+    }
+
+    /**
+     * Arenas spread over ten groups, every other one with both spawn points set
+     */
+    private static List<ArenaRecord> generate(int count) {
+        List<ArenaRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String basename = "bench" + (i % 10);
+            double x = (i / 10) * 128.0;
+            double z = (i % 10) * 128.0;
+            ArenaRecord.Position spawn1 = i % 2 == 0 ? new ArenaRecord.Position(x + 10.5, 65, z + 10.5, 90f, 0f) : null;
+            ArenaRecord.Position spawn2 = i % 2 == 0 ? new ArenaRecord.Position(x + 50.5, 65, z + 50.5, -90f, 0f) : null;
+            records.add(new ArenaRecord(basename + (i / 10 + 1), basename, "duels_world",
+                    new ArenaRecord.Position(x, 60, z, 0f, 0f), new ArenaRecord.Position(x + 63, 90, z + 63, 0f, 0f),
+                    spawn1, spawn2));
+        }
+        return records;
+    }
+}
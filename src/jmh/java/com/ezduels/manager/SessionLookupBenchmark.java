@@ -0,0 +1,103 @@
+package com.ezduels.manager;
+
+import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the player session index with the previous lookup (active duels, then pending duels)
+ * on synthetic players, as listeners use it: a duel lookup per event for any online player, and
+ * the "not in a duel" check on a server where nobody is dueling.
+ * One in ten players is dueling, half of them in duels that are still pending.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionLookupBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private UUID[] online;
+    private Map<UUID, Duel> activeDuels;
+    private Map<UUID, Duel> pendingDuels;
+    private PlayerSessionIndex index;
+    private Map<UUID, Duel> emptyActive;
+    private Map<UUID, Duel> emptyPending;
+    private PlayerSessionIndex emptyIndex;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        online = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            online[i] = UUID.randomUUID();
+        }
+
+        activeDuels = new ConcurrentHashMap<>();
+        pendingDuels = new ConcurrentHashMap<>();
+        index = new PlayerSessionIndex();
+        for (int i = 0; i + 1 < players; i += 20) {
+            Duel duel = new Duel(null, null); // Players are never touched by the lookups
+            Map<UUID, Duel> legacy = (i / 20) % 2 == 0 ? activeDuels : pendingDuels;
+            legacy.put(online[i], duel);
+            legacy.put(online[i + 1], duel);
+            index.put(online[i], new DuelSession(duel, DuelSession.Role.CHALLENGER));
+            index.put(online[i + 1], new DuelSession(duel, DuelSession.Role.TARGET));
+        }
+
+        emptyActive = new ConcurrentHashMap<>();
+        emptyPending = new ConcurrentHashMap<>();
+        emptyIndex = new PlayerSessionIndex();
+    }
+
+    /**
+     * Cycle through the online players, like events from all over the server
+     */
+    private UUID nextPlayer() {
+        UUID player = online[next];
+        next = next + 1 == online.length ? 0 : next + 1;
+        return player;
+    }
+
+    @Benchmark
+    public Duel legacyLookup() {
+        UUID player = nextPlayer();
+        Duel duel = activeDuels.get(player);
+        return duel != null ? duel : pendingDuels.get(player);
+    }
+
+    @Benchmark
+    public DuelSession indexLookup() {
+        return index.get(nextPlayer());
+    }
+
+    @Benchmark
+    public boolean legacyIdleCheck() {
+        UUID player = nextPlayer();
+        return emptyActive.containsKey(player) || emptyPending.containsKey(player);
+    }
+
+    @Benchmark
+    public boolean indexIdleCheck() {
+        return emptyIndex.contains(nextPlayer());
+    }
+}
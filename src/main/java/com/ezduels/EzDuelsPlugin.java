@@ -1,17 +1,24 @@
 package com.ezduels;
 
 import com.ezduels.arena.ArenaManager;
+import com.ezduels.arena.DedicatedWorld;
+import com.ezduels.arena.VoidChunkGenerator;
 import com.ezduels.commands.*;
+import com.ezduels.config.MessageCatalog;
+import com.ezduels.config.Settings;
 import com.ezduels.gui.GuiManager;
 import com.ezduels.listeners.*;
 import com.ezduels.manager.BettingManager;
 import com.ezduels.manager.DuelManager;
 import com.ezduels.manager.PrizeManager;
 import com.ezduels.manager.StatsManager;
+import com.ezduels.timer.TimerWheel;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -31,6 +38,10 @@ public class EzDuelsPlugin extends JavaPlugin {
     private PrizeManager prizeManager;
     private StatsManager statsManager;
     private GuiManager guiManager;
+    private ArenaEntityListener arenaEntityListener;
+    private TimerWheel timerWheel;
+    private MessageCatalog messageCatalog;
+    private volatile Settings settings; // Replaced as a whole on reload
     
     @Override
     public void onEnable() {
@@ -40,8 +51,26 @@ public class EzDuelsPlugin extends JavaPlugin {
         // Save default config
         saveDefaultConfig();
         
-        // Load plugin prefix from config
-        loadPluginPrefix();
+        // Bind the config, using the default of each invalid value
+        Settings loaded = Settings.load(getConfig());
+        List<String> problems = loaded.validate();
+        if (!problems.isEmpty()) {
+            problems.forEach(problem -> pluginLogger.severe("Invalid config: " + problem));
+            pluginLogger.severe("Using the defaults of these values until config.yml is fixed and reloaded");
+            loaded = loaded.withDefaultsForInvalid();
+        }
+        settings = loaded;
+        
+        // Load plugin prefix and message templates from config
+        messageCatalog = new MessageCatalog(getLogger());
+        reloadMessages();
+        
+        // Arenas may live in the dedicated world, so it has to be loaded first
+        DedicatedWorld.ensureLoaded(this);
+        
+        // Start the timer wheel every duel timer runs on
+        timerWheel = new TimerWheel(this);
+        timerWheel.start();
         
         // Initialize managers
         initializeManagers();
@@ -61,6 +90,14 @@ public class EzDuelsPlugin extends JavaPlugin {
         if (duelManager != null) {
             duelManager.cleanup();
         }
+        if (timerWheel != null) {
+            timerWheel.shutdown();
+        }
+        
+        // Finish pending arena resets
+        if (arenaManager != null) {
+            arenaManager.shutdown();
+        }
         
         // Save data
         if (statsManager != null) {
@@ -71,11 +108,34 @@ public class EzDuelsPlugin extends JavaPlugin {
     }
     
     /**
-     * Load the plugin prefix from config using MiniMessage
+     * Lets other worlds use the void generator, e.g. "generator: EzDuels" in bukkit.yml
      */
-    private void loadPluginPrefix() {
-        String prefixString = getConfig().getString("plugin.prefix", "<gray>[<color:#45bbff><b>DUELS</b></color>]</gray>");
-        pluginPrefix = MiniMessage.miniMessage().deserialize(prefixString);
+    @Override
+    public ChunkGenerator getDefaultWorldGenerator(String worldName, String id) {
+        return new VoidChunkGenerator();
+    }
+    
+    /**
+     * Re-read config.yml and swap in its settings and messages, unless it is invalid
+     * @return problems that kept the config from being applied, empty if it was
+     */
+    public List<String> reloadSettings() {
+        reloadConfig();
+        Settings candidate = Settings.load(getConfig());
+        List<String> problems = candidate.validate();
+        if (problems.isEmpty()) {
+            settings = candidate;
+            reloadMessages();
+        }
+        return problems;
+    }
+    
+    /**
+     * Parse the plugin prefix and every message template from the current config
+     */
+    private void reloadMessages() {
+        pluginPrefix = MiniMessage.miniMessage().deserialize(settings.prefix());
+        messageCatalog.load(getConfig());
     }
     
     /**
@@ -116,6 +176,9 @@ public class EzDuelsPlugin extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new GuiListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
         getServer().getPluginManager().registerEvents(new ArenaListener(this), this);
+        getServer().getPluginManager().registerEvents(new ArenaProtectionListener(this), this);
+        arenaEntityListener = new ArenaEntityListener(this);
+        getServer().getPluginManager().registerEvents(arenaEntityListener, this);
         getServer().getPluginManager().registerEvents(new BettingListener(this), this);
     }
     
@@ -155,4 +218,26 @@ public class EzDuelsPlugin extends JavaPlugin {
     public GuiManager getGuiManager() {
         return guiManager;
     }
+    
+    /**
+     * Listener counting the entities of leased arenas
+     */
+    public ArenaEntityListener getArenaEntityListener() {
+        return arenaEntityListener;
+    }
+    
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+    
+    public MessageCatalog getMessageCatalog() {
+        return messageCatalog;
+    }
+    
+    /**
+     * The current settings, read fields from the returned object rather than keeping it
+     */
+    public Settings getSettings() {
+        return settings;
+    }
 }
\ No newline at end of file
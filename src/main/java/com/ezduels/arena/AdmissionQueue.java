@@ -0,0 +1,296 @@
+package com.ezduels.arena;
+
+import com.ezduels.EzDuelsPlugin;
+import com.ezduels.model.Arena;
+import com.ezduels.model.Duel;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duels waiting for an arena once their countdown is over and their group has none free.
+ * Each arena group has its own FIFO queue (plus one for AUTO duels, which take any group),
+ * served in arrival order whenever an arena is released after its reset. Waiting players
+ * are shown their position and an estimated wait, and duels waiting too long are cancelled.
+ */
+public class AdmissionQueue {
+
+    private static final String ANY_GROUP = "*";          // Queue key for AUTO duels
+    private static final int DURATION_SAMPLES = 20;       // Recent arena lease durations kept per group
+    private static final long DEFAULT_DURATION = 180_000; // Assumed lease duration before any was measured
+
+    private final EzDuelsPlugin plugin;
+    private final ArenaManager arenaManager;
+    private final Map<String, Deque<Entry>> queues;
+    private final Map<String, Deque<Long>> recentDurations;
+    private long nextSequence;
+    private BukkitTask task;
+
+    public AdmissionQueue(EzDuelsPlugin plugin, ArenaManager arenaManager) {
+        this.plugin = plugin;
+        this.arenaManager = arenaManager;
+        this.queues = new HashMap<>();
+        this.recentDurations = new HashMap<>();
+    }
+
+    /**
+     * Put a duel at the back of its group's queue
+     * @return the duel's position in the queue, starting at 1, see {@link #position}
+     */
+    public int enqueue(Duel duel) {
+        String key = keyOf(duel);
+        Entry entry = new Entry(duel, nextSequence++, System.currentTimeMillis());
+        queues.computeIfAbsent(key, group -> new ArrayDeque<>()).addLast(entry);
+
+        if (task == null) {
+            task = new BukkitRunnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            }.runTaskTimer(plugin, 20L, 20L);
+        }
+        return position(key, entry);
+    }
+
+    /**
+     * Take a duel out of the queue (e.g. when it is cancelled while waiting)
+     * @return false if the duel was not queued
+     */
+    public boolean remove(Duel duel) {
+        Deque<Entry> queue = queues.get(keyOf(duel));
+        return queue != null && queue.removeIf(entry -> entry.duel == duel);
+    }
+
+    /**
+     * Whether duels are already waiting for the arenas a duel could use, so it must queue behind them.
+     * A group's arenas are also wanted by waiting AUTO duels, which {@link #serve} weighs the same way.
+     */
+    public boolean hasWaiting(Duel duel) {
+        return next(keyOf(duel)) != null;
+    }
+
+    /**
+     * Hand free arenas to waiting duels, oldest first. Called whenever an arena of a group becomes free.
+     */
+    public void serve(String group) {
+        while (true) {
+            Entry next = next(group);
+            if (next == null) {
+                return;
+            }
+
+            Arena arena = arenaManager.acquireArena(next.duel);
+            if (arena == null) {
+                return;
+            }
+            queues.get(keyOf(next.duel)).pollFirst();
+            plugin.getDuelManager().admitQueuedDuel(next.duel, arena);
+        }
+    }
+
+    /**
+     * The duel that gets the next free arena of a group: whichever of the group's and the AUTO
+     * queue's heads has waited longest
+     */
+    private Entry next(String group) {
+        Deque<Entry> groupQueue = queues.get(group);
+        Deque<Entry> anyQueue = queues.get(ANY_GROUP);
+        Entry groupHead = groupQueue == null ? null : groupQueue.peekFirst();
+        Entry anyHead = anyQueue == null ? null : anyQueue.peekFirst();
+        if (groupHead == null) {
+            return anyHead;
+        }
+        if (anyHead == null) {
+            return groupHead;
+        }
+        return groupHead.sequence < anyHead.sequence ? groupHead : anyHead;
+    }
+
+    /**
+     * Position of a queued duel, starting at 1, in the order {@link #next} serves them: the duels
+     * ahead of it in its own queue plus the older ones of the queues competing for the same arenas.
+     * A group duel competes with the AUTO queue, and an AUTO duel with every group queue, though
+     * the older group duels there only go first if they want the arena that is freed.
+     */
+    private int position(String key, Entry entry) {
+        int position = 1;
+        for (Map.Entry<String, Deque<Entry>> queue : queues.entrySet()) {
+            if (!queue.getKey().equals(key) && !queue.getKey().equals(ANY_GROUP) && !key.equals(ANY_GROUP)) {
+                continue;
+            }
+            for (Entry other : queue.getValue()) {
+                if (other.sequence >= entry.sequence) {
+                    break; // Each queue is in arrival order
+                }
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Remember how long an arena was held, for wait estimates. Only called for leases that
+     * started a fight, a lease handed back at once would drag the average down.
+     */
+    public void recordLease(Arena arena) {
+        long duration = arena.getLastReleasedAt() - arena.getLeasedAt();
+        if (arena.getLeasedAt() == 0 || duration <= 0) {
+            return;
+        }
+        Deque<Long> durations = recentDurations.computeIfAbsent(arena.getBasename(), group -> new ArrayDeque<>());
+        durations.addLast(duration);
+        if (durations.size() > DURATION_SAMPLES) {
+            durations.pollFirst();
+        }
+    }
+
+    /**
+     * Update waiting players and cancel duels that have waited too long
+     */
+    private void tick() {
+        long timeout = plugin.getSettings().arenas().queueTimeout() * 1000L;
+        long now = System.currentTimeMillis();
+        List<Duel> expired = new ArrayList<>();
+
+        for (Deque<Entry> queue : queues.values()) {
+            for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (now - entry.enqueuedAt >= timeout) {
+                    it.remove();
+                    expired.add(entry.duel);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Deque<Entry>> queue : queues.entrySet()) {
+            for (Entry entry : queue.getValue()) {
+                int position = position(queue.getKey(), entry);
+                long waitSeconds = (estimateWait(queue.getKey(), position, now) + 999) / 1000;
+                Component message = Component.text("Waiting for an arena: #" + position + " in queue, about " + formatWait(waitSeconds))
+                        .color(NamedTextColor.YELLOW);
+                entry.duel.getChallenger().sendActionBar(message);
+                entry.duel.getTarget().sendActionBar(message);
+            }
+        }
+
+        for (Duel duel : expired) {
+            Component message = Component.text("No arena became free in time, the duel has been cancelled.")
+                    .color(NamedTextColor.RED);
+            duel.getChallenger().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+            duel.getTarget().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+            plugin.getDuelManager().cancelDuel(duel);
+        }
+
+        if (getQueuedCount() == 0 && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Estimated wait in milliseconds for a queue position, assuming each leased arena is held for
+     * the recent average duration and the queue is served in rounds of one arena each
+     */
+    private long estimateWait(String key, int position, long now) {
+        List<Long> remaining = new ArrayList<>();
+        long average = 0;
+        int groups = 0;
+        for (String group : key.equals(ANY_GROUP) ? arenaManager.getArenaGroups() : List.of(key)) {
+            long groupAverage = getAverageDuration(group);
+            average += groupAverage;
+            groups++;
+            for (Arena arena : arenaManager.getArenas(group)) {
+                if (arena.isInUse()) {
+                    remaining.add(Math.max(0, groupAverage - (now - arena.getLeasedAt())));
+                }
+            }
+        }
+        if (remaining.isEmpty()) {
+            return groups == 0 ? DEFAULT_DURATION : average / groups;
+        }
+        average /= groups;
+        remaining.sort(null);
+
+        int index = (position - 1) % remaining.size();
+        int rounds = (position - 1) / remaining.size();
+        return remaining.get(index) + rounds * average;
+    }
+
+    /**
+     * Average of the recent lease durations of a group
+     */
+    public long getAverageDuration(String group) {
+        Deque<Long> durations = recentDurations.get(group);
+        if (durations == null || durations.isEmpty()) {
+            return DEFAULT_DURATION;
+        }
+        long total = 0;
+        for (long duration : durations) {
+            total += duration;
+        }
+        return total / durations.size();
+    }
+
+    /**
+     * Number of duels waiting in a group's queue
+     */
+    public int getQueuedCount(String group) {
+        Deque<Entry> queue = queues.get(group);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Number of duels waiting across all queues
+     */
+    public int getQueuedCount() {
+        int count = 0;
+        for (Deque<Entry> queue : queues.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Forget every waiting duel (for plugin shutdown)
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queues.clear();
+    }
+
+    private static String keyOf(Duel duel) {
+        return duel.getArenaGroup() == null ? ANY_GROUP : duel.getArenaGroup();
+    }
+
+    private static String formatWait(long seconds) {
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        return (seconds / 60) + "m " + (seconds % 60) + "s";
+    }
+
+    private static final class Entry {
+        private final Duel duel;
+        private final long sequence;
+        private final long enqueuedAt;
+
+        private Entry(Duel duel, long sequence, long enqueuedAt) {
+            this.duel = duel;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ezduels.arena;
+
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Entities spawned in an arena while it is leased, per category and in spawn order.
+ * Kept up to date from spawn and remove events, plus a periodic check for entities that
+ * left the arena, so caps never need a recount.
+ */
+public class ArenaEntities {
+
+    private final LinkedHashSet<Entity>[] byCategory;
+
+    @SuppressWarnings("unchecked")
+    public ArenaEntities() {
+        this.byCategory = new LinkedHashSet[EntityCategory.values().length];
+        for (int i = 0; i < byCategory.length; i++) {
+            byCategory[i] = new LinkedHashSet<>();
+        }
+    }
+
+    public void add(EntityCategory category, Entity entity) {
+        byCategory[category.ordinal()].add(entity);
+    }
+
+    public void remove(EntityCategory category, Entity entity) {
+        byCategory[category.ordinal()].remove(entity);
+    }
+
+    public int count(EntityCategory category) {
+        return byCategory[category.ordinal()].size();
+    }
+
+    /**
+     * Despawn the oldest entities of a category until at most the given number are left
+     * @return number of entities despawned
+     */
+    public int evictOldest(EntityCategory category, int keep) {
+        LinkedHashSet<Entity> entities = byCategory[category.ordinal()];
+        int evicted = 0;
+        for (Iterator<Entity> it = entities.iterator(); it.hasNext() && entities.size() > keep; ) {
+            Entity entity = it.next();
+            it.remove();
+            entity.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Stop tracking the entities that match, without despawning them
+     * @return the entities no longer tracked
+     */
+    public List<Entity> removeIf(Predicate<Entity> filter) {
+        List<Entity> removed = new ArrayList<>();
+        for (LinkedHashSet<Entity> entities : byCategory) {
+            for (Iterator<Entity> it = entities.iterator(); it.hasNext(); ) {
+                Entity entity = it.next();
+                if (filter.test(entity)) {
+                    it.remove();
+                    removed.add(entity);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Despawn every tracked entity that is still in the world, and stop tracking them
+     * @return number of entities despawned
+     */
+    public int removeAll() {
+        int removed = 0;
+        for (LinkedHashSet<Entity> entities : byCategory) {
+            for (Entity entity : entities) {
+                if (entity.isValid()) {
+                    entity.remove();
+                    removed++;
+                }
+            }
+            entities.clear();
+        }
+        return removed;
+    }
+
+    /**
+     * Stop tracking everything (once the lease ends)
+     */
+    public void clear() {
+        for (LinkedHashSet<Entity> entities : byCategory) {
+            entities.clear();
+        }
+    }
+}
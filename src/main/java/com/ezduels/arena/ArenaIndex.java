@@ -0,0 +1,164 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup from a block position to the arena containing it.
+ * Arenas are bucketed by world and chunk, so a lookup is one scan over the few indexed
+ * worlds, one hash probe and a bounds check against the arenas overlapping that chunk,
+ * without allocating. A new index is built whenever arenas are added or removed.
+ */
+public final class ArenaIndex {
+
+    public static final ArenaIndex EMPTY = new ArenaIndex(new World[0], new ChunkTable[0]);
+    private static final Arena[] NO_ARENAS = new Arena[0];
+
+    private final World[] worlds;
+    private final ChunkTable[] tables;
+
+    private ArenaIndex(World[] worlds, ChunkTable[] tables) {
+        this.worlds = worlds;
+        this.tables = tables;
+    }
+
+    /**
+     * Index a set of arenas
+     */
+    public static ArenaIndex build(Collection<Arena> arenas) {
+        Map<World, Map<Long, List<Arena>>> byWorld = new HashMap<>();
+        for (Arena arena : arenas) {
+            Map<Long, List<Arena>> chunks = byWorld.computeIfAbsent(arena.getWorld(), world -> new HashMap<>());
+            for (int chunkX = arena.getMinX() >> 4; chunkX <= arena.getMaxX() >> 4; chunkX++) {
+                for (int chunkZ = arena.getMinZ() >> 4; chunkZ <= arena.getMaxZ() >> 4; chunkZ++) {
+                    chunks.computeIfAbsent(chunkKey(chunkX, chunkZ), key -> new ArrayList<>()).add(arena);
+                }
+            }
+        }
+
+        World[] worlds = new World[byWorld.size()];
+        ChunkTable[] tables = new ChunkTable[byWorld.size()];
+        int i = 0;
+        for (Map.Entry<World, Map<Long, List<Arena>>> entry : byWorld.entrySet()) {
+            worlds[i] = entry.getKey();
+            tables[i] = new ChunkTable(entry.getValue());
+            i++;
+        }
+        return new ArenaIndex(worlds, tables);
+    }
+
+    /**
+     * Get the arena containing a block, if any
+     */
+    public Arena getArenaAt(World world, int x, int y, int z) {
+        for (int i = 0; i < worlds.length; i++) {
+            if (worlds[i] != world && !worlds[i].equals(world)) {
+                continue;
+            }
+            Arena[] candidates = tables[i].get(chunkKey(x >> 4, z >> 4));
+            if (candidates == null) {
+                return null;
+            }
+            for (Arena arena : candidates) {
+                if (arena.containsBlock(x, y, z)) {
+                    return arena;
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Whether any arena is in a world, a quick reject for events far from every arena
+     */
+    public boolean hasWorld(World world) {
+        for (World indexed : worlds) {
+            if (indexed == world || indexed.equals(world)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether any arena overlaps a chunk
+     */
+    public boolean hasArenaInChunk(World world, int chunkX, int chunkZ) {
+        for (int i = 0; i < worlds.length; i++) {
+            if (worlds[i] == world || worlds[i].equals(world)) {
+                return tables[i].get(chunkKey(chunkX, chunkZ)) != null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the arenas overlapping a chunk
+     * @return the arenas, or an empty array if none
+     */
+    public Arena[] getArenasInChunk(World world, int chunkX, int chunkZ) {
+        for (int i = 0; i < worlds.length; i++) {
+            if (worlds[i] == world || worlds[i].equals(world)) {
+                Arena[] arenas = tables[i].get(chunkKey(chunkX, chunkZ));
+                return arenas == null ? NO_ARENAS : arenas.clone();
+            }
+        }
+        return NO_ARENAS;
+    }
+
+    /**
+     * Same layout as Paper's Chunk#getChunkKey
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /**
+     * Open-addressing map from chunk key to the arenas overlapping that chunk
+     */
+    private static final class ChunkTable {
+        private final long[] keys;
+        private final Arena[][] values; // Null marks an empty slot
+        private final int mask;
+
+        private ChunkTable(Map<Long, List<Arena>> chunks) {
+            // Keep the load factor at or below one half
+            int capacity = Integer.highestOneBit(Math.max(1, chunks.size()) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new Arena[capacity][];
+            this.mask = capacity - 1;
+            for (Map.Entry<Long, List<Arena>> entry : chunks.entrySet()) {
+                int slot = slot(entry.getKey());
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                values[slot] = entry.getValue().toArray(new Arena[0]);
+            }
+        }
+
+        private Arena[] get(long key) {
+            int slot = slot(key);
+            Arena[] value;
+            while ((value = values[slot]) != null) {
+                if (keys[slot] == key) {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
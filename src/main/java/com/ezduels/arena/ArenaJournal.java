@@ -0,0 +1,146 @@
+package com.ezduels.arena;
+
+import java.util.Arrays;
+
+/**
+ * Records which blocks of an arena changed during a duel, so a reset only has to
+ * restore those blocks instead of pasting the whole region.
+ * Positions are packed into longs and kept in an open-addressing hash set. Once the
+ * configured limit is reached the journal is marked as overflowed and the caller
+ * should fall back to a full paste.
+ */
+public class ArenaJournal {
+
+    private static final long EMPTY = Long.MIN_VALUE; // Unreachable packed value (x = -2^25)
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int limit;
+    private long[] table;
+    private int size;
+    private boolean overflowed;
+
+    public ArenaJournal(int limit) {
+        this.limit = Math.max(1, limit);
+        this.table = newTable(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Record a changed block position
+     */
+    public void record(int x, int y, int z) {
+        if (overflowed) {
+            return;
+        }
+
+        long key = pack(x, y, z);
+        int mask = table.length - 1;
+        int index = mix(key) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == key) {
+                return; // Already recorded
+            }
+            index = (index + 1) & mask;
+        }
+
+        if (size >= limit) {
+            // Too many changes to be worth tracking, the whole region will be pasted
+            overflowed = true;
+            return;
+        }
+
+        table[index] = key;
+        size++;
+        // Keep the load factor at or below 0.5
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    /**
+     * Whether more blocks changed than the journal is allowed to track
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public boolean isEmpty() {
+        return size == 0 && !overflowed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy out all recorded positions in packed form
+     */
+    public long[] toArray() {
+        long[] positions = new long[size];
+        int i = 0;
+        for (long key : table) {
+            if (key != EMPTY) {
+                positions[i++] = key;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Forget all recorded changes
+     */
+    public void clear() {
+        if (table.length > INITIAL_CAPACITY) {
+            table = newTable(INITIAL_CAPACITY);
+        } else {
+            Arrays.fill(table, EMPTY);
+        }
+        size = 0;
+        overflowed = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (long key : old) {
+            if (key == EMPTY) {
+                continue;
+            }
+            int index = mix(key) & mask;
+            while (table[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            table[index] = key;
+        }
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Pack a block position into a long (26 bits x, 26 bits z, 12 bits y)
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+}
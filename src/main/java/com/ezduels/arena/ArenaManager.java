@@ -1,21 +1,29 @@
 package com.ezduels.arena;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.config.Settings;
 import com.ezduels.model.Arena;
+import com.ezduels.model.Duel;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.BuiltInClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -25,81 +33,339 @@ public class ArenaManager {
     
     private final EzDuelsPlugin plugin;
     private final Map<String, List<Arena>> arenaGroups;
-    private final File arenasFile;
-    private final Yaml yaml;
+    private final ArenaRegistry registry;
+    private final File snapshotsFolder;
+    private final RegenerationScheduler regenerationScheduler;
+    private final SnapshotStore snapshotStore;
+    private final ArenaPool arenaPool;
+    private final ArenaProvisioner provisioner;
+    private final AdmissionQueue admissionQueue;
+    private volatile ArenaIndex arenaIndex; // Rebuilt whenever arenas are added or removed
+    private final DirtyArenaLog dirtyLog;
+    private final Map<Arena, CompletableFuture<Void>> materializing; // Snapshots being read from disk
+    private final Map<Arena, Boolean> streamed; // Decided once per arena, a reload never switches its snapshot format
+    private final ChunkTickets chunkTickets;
     
     public ArenaManager(EzDuelsPlugin plugin) {
         this.plugin = plugin;
         this.arenaGroups = new ConcurrentHashMap<>();
-        this.arenasFile = new File(plugin.getDataFolder(), "arenas.yml");
-        
-        DumperOptions options = new DumperOptions();
-        options.setIndent(2);
-        options.setPrettyFlow(true);
-        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        this.yaml = new Yaml(options);
+        this.regenerationScheduler = new RegenerationScheduler(plugin);
+        this.snapshotStore = new SnapshotStore();
+        this.arenaPool = new ArenaPool();
+        this.provisioner = new ArenaProvisioner(plugin, this);
+        this.admissionQueue = new AdmissionQueue(plugin, this);
+        this.arenaIndex = ArenaIndex.EMPTY;
+        this.registry = new ArenaRegistry(new File(plugin.getDataFolder(), "arenas.dat"),
+                new File(plugin.getDataFolder(), "arenas.yml"), plugin.getLogger());
+        this.snapshotsFolder = new File(plugin.getDataFolder(), "snapshots");
+        this.dirtyLog = new DirtyArenaLog(new File(plugin.getDataFolder(), "dirty-arenas.log"), plugin.getLogger());
+        this.materializing = new HashMap<>();
+        this.streamed = new ConcurrentHashMap<>();
+        this.chunkTickets = new ChunkTickets(plugin);
         
+        configureSelection();
+        Set<String> dirtyArenas = dirtyLog.load();
         loadArenas();
+        rebuildIndex();
+        // Forget arenas that were deleted since they were marked
+        for (String arenaName : dirtyArenas) {
+            if (getArena(arenaName) == null) {
+                dirtyLog.markClean(arenaName);
+            }
+        }
+        if (plugin.getSettings().arenas().preloadSnapshots()) {
+            // Read every snapshot now, in parallel in the background, rather than on first lease
+            arenaGroups.values().forEach(arenas -> arenas.forEach(this::materialize));
+        }
+        provisioner.start();
+    }
+    
+    /**
+     * Apply the arena selection policies from the config: a default and optional per-group overrides
+     */
+    private void configureSelection() {
+        // Policy names were validated with the rest of the settings
+        Settings.Selection selection = plugin.getSettings().arenas().selection();
+        arenaPool.setDefaultPolicy(() -> ArenaSelectionPolicy.byName(selection.policy()));
+        for (Map.Entry<String, String> group : selection.groups().entrySet()) {
+            setSelectionPolicy(group.getKey(), ArenaSelectionPolicy.byName(group.getValue()));
+        }
+    }
+    
+    /**
+     * Replace how free arenas of a group are chosen
+     */
+    public void setSelectionPolicy(String group, ArenaSelectionPolicy policy) {
+        arenaPool.setPolicy(group, policy);
+    }
+    
+    public ArenaSelectionPolicy getSelectionPolicy(String group) {
+        return arenaPool.getPolicy(group);
     }
     
     /**
-     * Load arenas from file
+     * Load arenas from the registry
      */
     private void loadArenas() {
-        if (!arenasFile.exists()) {
-            return;
+        Map<String, List<Arena>> loaded = new LinkedHashMap<>();
+        for (ArenaRecord record : registry.load()) {
+            org.bukkit.World world = plugin.getServer().getWorld(record.world());
+            if (world == null) {
+                plugin.getLogger().warning("World " + record.world() + " of arena " + record.name() + " is not loaded, skipping it");
+                continue;
+            }
+            Arena arena = record.toArena(world);
+            // Saved snapshots are only read once the arena is first leased
+            if (!hasSavedSnapshot(arena)) {
+                plugin.getLogger().info("Arena " + arena.getName() + " has no saved snapshot, capturing it from the world");
+                captureAndRegister(arena);
+            }
+            loaded.computeIfAbsent(record.basename(), basename -> new ArrayList<>()).add(arena);
+        }
+        
+        for (Map.Entry<String, List<Arena>> entry : loaded.entrySet()) {
+            arenaGroups.put(entry.getKey(), entry.getValue());
+            entry.getValue().forEach(this::registerIfReady);
+        }
+    }
+    
+    /**
+     * Make sure an arena's snapshot is in memory, reading it from disk off the main thread on first use.
+     * Arenas are loaded without their snapshots, so startup cost does not grow with arena volume.
+     * @return completes on the main thread once the arena has its snapshot
+     */
+    public CompletableFuture<Void> materialize(Arena arena) {
+        if (arena.hasSnapshot()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> pending = materializing.get(arena);
+        if (pending != null) {
+            return pending;
+        }
+        if (!hasSavedSnapshot(arena)) {
+            return CompletableFuture.failedFuture(new IOException("Arena " + arena.getName() + " has no snapshot"));
         }
         
-        try (FileReader reader = new FileReader(arenasFile)) {
-            Map<String, Object> data = yaml.load(reader);
-            if (data == null) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        materializing.put(arena, future);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            ArenaSnapshot snapshot;
+            try {
+                snapshot = readSnapshot(arena);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to load snapshot of arena " + arena.getName() + ": " + e.getMessage());
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    materializing.remove(arena);
+                    future.completeExceptionally(e); // Don't overwrite a snapshot we could not read
+                });
                 return;
             }
-            
-            for (Map.Entry<String, Object> entry : data.entrySet()) {
-                String basename = entry.getKey();
-                List<Map<String, Object>> arenasList = (List<Map<String, Object>>) entry.getValue();
-                
-                List<Arena> arenas = new ArrayList<>();
-                for (Map<String, Object> arenaData : arenasList) {
-                    Arena arena = deserializeArena(arenaData);
-                    if (arena != null) {
-                        arenas.add(arena);
-                    }
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (snapshot == null) {
+                    plugin.getLogger().warning("Snapshot of arena " + arena.getName() + " does not match its bounds, capturing it again");
+                    captureSnapshot(arena).whenComplete((captured, error) -> {
+                        materializing.remove(arena);
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(null);
+                        }
+                    });
+                    return;
                 }
-                
-                arenaGroups.put(basename, arenas);
+                materializing.remove(arena);
+                if (!arena.hasSnapshot()) {
+                    arena.swapSnapshot(snapshotStore.intern(snapshot));
+                }
+                future.complete(null);
+            });
+        });
+        return future;
+    }
+    
+    /**
+     * Read an arena's saved snapshot. Large arenas map their section file, converting a
+     * schematic saved before the arena was streamed or a section file in an older format.
+     * Safe to call off the main thread.
+     * @return the snapshot, or null if the saved one does not match the arena's bounds
+     */
+    private ArenaSnapshot readSnapshot(Arena arena) throws IOException {
+        if (!isStreamed(arena)) {
+            Clipboard clipboard = arena.readSchematic(getSnapshotFile(arena));
+            return clipboard == null ? null : ArenaSnapshot.fromClipboard(clipboard);
+        }
+        
+        File file = getSectionFile(arena);
+        if (!file.exists() || !ArenaSnapshot.isCurrentFormat(file)) {
+            Clipboard clipboard = arena.readSchematic(getSnapshotFile(arena));
+            if (clipboard == null) {
+                return null;
             }
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to load arenas: " + e.getMessage());
+            BlockVector3 origin = clipboard.getRegion().getMinimumPoint();
+            BlockVector3 size = clipboard.getDimensions();
+            ArenaSnapshot.write(file, origin.x() & 15, origin.y() & 15, origin.z() & 15, size.x(), size.y(), size.z(),
+                    (x, y, z) -> clipboard.getFullBlock(origin.add(x, y, z)));
+            plugin.getLogger().info("Converted snapshot of arena " + arena.getName() + " to a section snapshot");
         }
+        ArenaSnapshot snapshot = ArenaSnapshot.map(file);
+        return matchesBounds(arena, snapshot) ? snapshot : null;
     }
     
     /**
-     * Save arenas to file
+     * Whether the arena has a snapshot, in memory or saved and not loaded yet
      */
-    public void saveArenas() {
-        try {
-            if (!arenasFile.exists()) {
-                arenasFile.getParentFile().mkdirs();
-                arenasFile.createNewFile();
+    public boolean hasSnapshot(Arena arena) {
+        return arena.hasSnapshot() || hasSavedSnapshot(arena);
+    }
+    
+    /**
+     * Whether a snapshot of the arena was saved by an earlier run
+     */
+    private boolean hasSavedSnapshot(Arena arena) {
+        return getSnapshotFile(arena).exists() || (isStreamed(arena) && getSectionFile(arena).exists());
+    }
+    
+    /**
+     * Capture an arena's current state as its pristine snapshot and write it to disk.
+     * The main thread only snapshots the arena's chunks, its blocks are encoded on a worker thread.
+     * @return completes on the main thread once the arena has its new snapshot, or exceptionally
+     *         if its chunks could not be loaded or the snapshot could not be saved
+     */
+    public CompletableFuture<Void> captureSnapshot(Arena arena) {
+        boolean streamed = isStreamed(arena);
+        File file = streamed ? getSectionFile(arena) : getSnapshotFile(arena);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ChunkCapture.take(arena, chunkTickets).whenComplete((capture, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                plugin.getLogger().severe("Failed to capture arena " + arena.getName() + ": " + cause.getMessage());
+                future.completeExceptionally(cause);
+                return;
             }
-            
-            Map<String, Object> data = new HashMap<>();
-            for (Map.Entry<String, List<Arena>> entry : arenaGroups.entrySet()) {
-                List<Map<String, Object>> arenasList = new ArrayList<>();
-                for (Arena arena : entry.getValue()) {
-                    arenasList.add(serializeArena(arena));
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                ArenaSnapshot snapshot;
+                try {
+                    snapshot = encodeCapture(arena, capture, file, streamed);
+                } catch (IOException | RuntimeException e) {
+                    plugin.getLogger().severe("Failed to save snapshot of arena " + arena.getName() + ": " + e.getMessage());
+                    plugin.getServer().getScheduler().runTask(plugin, () -> future.completeExceptionally(e));
+                    return;
                 }
-                data.put(entry.getKey(), arenasList);
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    // Blocks changed since the chunks were snapshotted stay journaled
+                    snapshotStore.release(arena.swapSnapshot(snapshotStore.intern(snapshot)));
+                    plugin.getLogger().info("Saved snapshot of arena " + arena.getName() + "!");
+                    future.complete(null);
+                });
+            });
+        });
+        return future;
+    }
+    
+    /**
+     * Capture the first snapshot of an arena, then add it to the pool if it is ready
+     */
+    private void captureAndRegister(Arena arena) {
+        captureSnapshot(arena).whenComplete((captured, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Arena " + arena.getName() + " has no snapshot and will not be used until it is recaptured");
+                return;
             }
-            
-            try (FileWriter writer = new FileWriter(arenasFile)) {
-                yaml.dump(data, writer);
+            registerIfReady(arena);
+        });
+    }
+    
+    /**
+     * Encode captured chunks into a snapshot and save it. Runs off the main thread.
+     * Large arenas are streamed into a mapped section file, others go through a clipboard
+     * so they can be saved as a schematic.
+     */
+    private ArenaSnapshot encodeCapture(Arena arena, ChunkCapture capture, File file, boolean streamed) throws IOException {
+        int sizeX = arena.getMaxX() - arena.getMinX() + 1;
+        int sizeY = arena.getMaxY() - arena.getMinY() + 1;
+        int sizeZ = arena.getMaxZ() - arena.getMinZ() + 1;
+        if (streamed) {
+            ArenaSnapshot.write(file, arena.getMinX() & 15, arena.getMinY() & 15, arena.getMinZ() & 15,
+                    sizeX, sizeY, sizeZ, capture);
+            return ArenaSnapshot.map(file);
+        }
+        
+        BlockVector3 origin = BlockVector3.at(arena.getMinX(), arena.getMinY(), arena.getMinZ());
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(
+                new CuboidRegion(origin, BlockVector3.at(arena.getMaxX(), arena.getMaxY(), arena.getMaxZ())));
+        try {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    for (int x = 0; x < sizeX; x++) {
+                        clipboard.setBlock(origin.add(x, y, z), capture.getBlock(x, y, z));
+                    }
+                }
             }
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save arenas: " + e.getMessage());
+        } catch (WorldEditException e) {
+            throw new IOException(e);
         }
+        file.getParentFile().mkdirs();
+        try (ClipboardWriter writer = BuiltInClipboardFormat.SPONGE_V3_SCHEMATIC.getWriter(new FileOutputStream(file))) {
+            writer.write(clipboard);
+        }
+        return ArenaSnapshot.fromClipboard(clipboard);
+    }
+    
+    /**
+     * Whether an arena keeps its snapshot on disk rather than on the heap. Decided when the arena is
+     * first loaded, from its volume, or kept streamed if only a section file was saved for it.
+     */
+    private boolean isStreamed(Arena arena) {
+        return streamed.computeIfAbsent(arena, key -> {
+            long volume = (long) (arena.getMaxX() - arena.getMinX() + 1)
+                    * (arena.getMaxY() - arena.getMinY() + 1)
+                    * (arena.getMaxZ() - arena.getMinZ() + 1);
+            return volume > plugin.getSettings().arenas().regeneration().diskSnapshotVolume()
+                    || (!getSnapshotFile(arena).exists() && getSectionFile(arena).exists());
+        });
+    }
+    
+    private static boolean matchesBounds(Arena arena, ArenaSnapshot snapshot) {
+        return snapshot.getOffsetX() == (arena.getMinX() & 15)
+                && snapshot.getOffsetY() == (arena.getMinY() & 15)
+                && snapshot.getOffsetZ() == (arena.getMinZ() & 15)
+                && snapshot.getSizeX() == arena.getMaxX() - arena.getMinX() + 1
+                && snapshot.getSizeY() == arena.getMaxY() - arena.getMinY() + 1
+                && snapshot.getSizeZ() == arena.getMaxZ() - arena.getMinZ() + 1;
+    }
+    
+    private File getSnapshotFile(Arena arena) {
+        return new File(snapshotsFolder, arena.getName() + ".schem");
+    }
+    
+    private File getSectionFile(Arena arena) {
+        return new File(snapshotsFolder, arena.getName() + ".sections");
+    }
+    
+    /**
+     * Save one arena's definition, appending it to the registry
+     */
+    public void saveArena(Arena arena) {
+        // Provisioned copies are recreated on demand
+        if (!arena.isEphemeral()) {
+            registry.put(ArenaRecord.of(arena));
+        }
+    }
+    
+    /**
+     * Save every arena, rewriting the registry, and export arenas.yml for hand-editing
+     */
+    public void saveArenas() {
+        List<ArenaRecord> records = new ArrayList<>();
+        for (List<Arena> group : arenaGroups.values()) {
+            for (Arena arena : group) {
+                if (!arena.isEphemeral()) {
+                    records.add(ArenaRecord.of(arena));
+                }
+            }
+        }
+        registry.putAll(records);
+        registry.exportYaml();
     }
     
     /**
@@ -122,7 +388,8 @@ public class ArenaManager {
             
             // Generate arena name
             List<Arena> existingArenas = arenaGroups.getOrDefault(basename, new ArrayList<>());
-            String arenaName = basename + (existingArenas.size() + 1);
+            long definedArenas = existingArenas.stream().filter(existing -> !existing.isEphemeral()).count();
+            String arenaName = basename + (definedArenas + 1);
             
             // Get world
             org.bukkit.World world = player.getWorld();
@@ -136,9 +403,13 @@ public class ArenaManager {
             // Create arena (spawn points will be set later)
             Arena arena = new Arena(arenaName, basename, world, minPoint, maxPoint, null, null);
             
+            // Take the pristine snapshot once, every reset restores from it
+            captureAndRegister(arena);
+            
             // Add to group
             existingArenas.add(arena);
             arenaGroups.put(basename, existingArenas);
+            rebuildIndex();
             
             return arena;
             
@@ -152,141 +423,277 @@ public class ArenaManager {
      * Set spawn location for an arena
      */
     public boolean setSpawnLocation(Arena arena, int spawnNumber, Location location) {
-        // Create new arena with updated spawn location
-        Location spawn1 = spawnNumber == 1 ? location : arena.getSpawnPoint1();
-        Location spawn2 = spawnNumber == 2 ? location : arena.getSpawnPoint2();
-        
-        Arena updatedArena = new Arena(arena.getName(), arena.getBasename(), arena.getWorld(), 
-            arena.getMinPoint(), arena.getMaxPoint(), spawn1, spawn2);
+        List<Arena> group = arenaGroups.get(arena.getBasename());
+        if (group == null || !group.contains(arena)) {
+            return false;
+        }
         
-        // Replace in the group
+        // Update in place so the arena keeps its snapshot
+        if (spawnNumber == 1) {
+            arena.setSpawnPoint1(location);
+        } else {
+            arena.setSpawnPoint2(location);
+        }
+        registerIfReady(arena);
+        return true;
+    }
+    
+    /**
+     * Add an arena to the pool once it has both spawn points and a snapshot
+     */
+    private void registerIfReady(Arena arena) {
+        if (arena.getSpawnPoint1() == null || arena.getSpawnPoint2() == null || !hasSnapshot(arena)) {
+            return;
+        }
+        if (dirtyLog.isDirty(arena.getName())) {
+            // Left mid-duel by a crash or stop, restore it fully before anyone can lease it
+            plugin.getLogger().info("Repairing arena " + arena.getName() + ", it was not reset before the last shutdown");
+            materialize(arena).whenComplete((loaded, error) -> {
+                if (error != null) {
+                    plugin.getLogger().severe("Could not repair arena " + arena.getName() + ", it will not be used: " + error.getMessage());
+                    return;
+                }
+                regenerationScheduler.submit(arena.createFullRegenerationJob(() -> {
+                    arena.sweepEntities();
+                    dirtyLog.markClean(arena.getName());
+                    registerArena(arena);
+                }));
+            });
+            return;
+        }
+        registerArena(arena);
+    }
+    
+    /**
+     * Make a ready arena leasable, handing it to a waiting duel if there is one
+     */
+    public void registerArena(Arena arena) {
+        arenaPool.register(arena);
+        admissionQueue.serve(arena.getBasename());
+    }
+    
+    /**
+     * Lease an arena for a duel, from the duel's chosen group or the least loaded group for AUTO
+     * @return the leased arena, or null if none is free
+     */
+    public Arena acquireArena(Duel duel) {
+        Arena arena;
+        if (duel.getArenaGroup() != null) {
+            arena = arenaPool.acquire(duel.getArenaGroup(), duel.getId());
+            if (arena == null) {
+                provisioner.onExhausted(duel.getArenaGroup());
+            }
+        } else {
+            arena = arenaPool.acquireLeastLoaded(duel.getId());
+            if (arena == null) {
+                for (String group : arenaGroups.keySet()) {
+                    provisioner.onExhausted(group);
+                }
+            }
+        }
+        if (arena != null) {
+            // Recorded before the fight can change anything, so a crash leaves it marked
+            dirtyLog.markDirty(arena);
+            materialize(arena);
+        }
+        return arena;
+    }
+    
+    /**
+     * Add an arena to its group (used for provisioned copies)
+     */
+    public void addArena(Arena arena) {
+        arenaGroups.computeIfAbsent(arena.getBasename(), name -> new ArrayList<>()).add(arena);
+        rebuildIndex();
+    }
+    
+    /**
+     * Remove an arena from its group. It must already be out of the pool.
+     */
+    public void removeArena(Arena arena) {
         List<Arena> group = arenaGroups.get(arena.getBasename());
         if (group != null) {
-            int index = group.indexOf(arena);
-            if (index != -1) {
-                group.set(index, updatedArena);
-                return true;
-            }
+            group.remove(arena);
         }
-        
-        return false;
+        streamed.remove(arena);
+        rebuildIndex();
+    }
+    
+    public ArenaProvisioner getProvisioner() {
+        return provisioner;
     }
     
     /**
-     * Get an available arena from a group
+     * Reference counts of the chunk tickets held for leased arenas and snapshot captures
      */
-    public Arena getAvailableArena(String basename) {
-        List<Arena> group = arenaGroups.get(basename);
-        if (group == null || group.isEmpty()) {
-            return null;
+    public ChunkTickets getChunkTickets() {
+        return chunkTickets;
+    }
+    
+    /**
+     * End a duel's lease on an arena, making it available again
+     * @param fought whether a fight took place, so the lease duration counts towards wait estimates
+     */
+    public void releaseArena(Arena arena, UUID duelId, boolean fought) {
+        if (!arenaPool.release(arena, duelId)) {
+            plugin.getLogger().warning("Duel " + duelId + " tried to release arena " + arena.getName() + " it does not hold");
+            return;
         }
-        
-        return group.stream()
-            .filter(arena -> !arena.isInUse())
-            .findFirst()
-            .orElse(null);
+        dirtyLog.markClean(arena.getName());
+        arena.releaseChunks(chunkTickets);
+        plugin.getArenaEntityListener().forget(arena);
+        if (fought) {
+            admissionQueue.recordLease(arena);
+        }
+        admissionQueue.serve(arena.getBasename());
+    }
+    
+    public ArenaPool getArenaPool() {
+        return arenaPool;
+    }
+    
+    public AdmissionQueue getAdmissionQueue() {
+        return admissionQueue;
     }
     
     /**
-     * Get all arena groups
+     * Swap in a fresh spatial index of all arenas
      */
-    public Set<String> getArenaGroups() {
-        return arenaGroups.keySet();
+    private void rebuildIndex() {
+        List<Arena> arenas = new ArrayList<>();
+        for (List<Arena> group : arenaGroups.values()) {
+            arenas.addAll(group);
+        }
+        arenaIndex = ArenaIndex.build(arenas);
     }
     
     /**
-     * Get arenas in a group
+     * Get the arena containing a block position, whether in use or not
      */
-    public List<Arena> getArenas(String basename) {
-        return arenaGroups.getOrDefault(basename, new ArrayList<>());
+    public Arena getArenaAt(org.bukkit.World world, int x, int y, int z) {
+        return arenaIndex.getArenaAt(world, x, y, z);
+    }
+    
+    public ArenaIndex getArenaIndex() {
+        return arenaIndex;
     }
     
     /**
-     * Check if an arena group exists
+     * Get the in-use (or resetting) arena containing a location, if any
      */
-    public boolean hasArenaGroup(String basename) {
-        return arenaGroups.containsKey(basename);
+    public Arena getActiveArenaAt(Location location) {
+        return getActiveArenaAt(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
     
     /**
-     * Serialize arena to map
+     * Let the pool know that free arenas overlapping an unloaded chunk are no longer warm
      */
-    private Map<String, Object> serializeArena(Arena arena) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("name", arena.getName());
-        data.put("basename", arena.getBasename());
-        data.put("world", arena.getWorld().getName());
-        data.put("minPoint", serializeLocation(arena.getMinPoint()));
-        data.put("maxPoint", serializeLocation(arena.getMaxPoint()));
-        
-        if (arena.getSpawnPoint1() != null) {
-            data.put("spawnPoint1", serializeLocation(arena.getSpawnPoint1()));
+    public void onChunkUnload(org.bukkit.World world, int chunkX, int chunkZ) {
+        for (Arena arena : arenaIndex.getArenasInChunk(world, chunkX, chunkZ)) {
+            arenaPool.cooled(arena);
         }
-        if (arena.getSpawnPoint2() != null) {
-            data.put("spawnPoint2", serializeLocation(arena.getSpawnPoint2()));
+    }
+    
+    /**
+     * Get the in-use (or resetting) arena containing a block, if any
+     */
+    public Arena getActiveArenaAt(org.bukkit.World world, int x, int y, int z) {
+        Arena arena = arenaIndex.getArenaAt(world, x, y, z);
+        if (arena != null && (arena.isInUse() || arena.isResetting())) {
+            return arena;
         }
-        
-        return data;
+        return null;
     }
     
     /**
-     * Deserialize arena from map
+     * Queue a reset of everything changed in an arena since its last snapshot.
+     * Once the blocks are restored, entities left in the arena are swept away.
      */
-    private Arena deserializeArena(Map<String, Object> data) {
-        try {
-            String name = (String) data.get("name");
-            String basename = (String) data.get("basename");
-            String worldName = (String) data.get("world");
-            
-            org.bukkit.World world = plugin.getServer().getWorld(worldName);
-            if (world == null) {
-                return null;
-            }
-            
-            Location minPoint = deserializeLocation((Map<String, Object>) data.get("minPoint"), world);
-            Location maxPoint = deserializeLocation((Map<String, Object>) data.get("maxPoint"), world);
-            
-            Location spawnPoint1 = null;
-            Location spawnPoint2 = null;
-            
-            if (data.containsKey("spawnPoint1")) {
-                spawnPoint1 = deserializeLocation((Map<String, Object>) data.get("spawnPoint1"), world);
+    public void regenerate(Arena arena, Runnable onComplete) {
+        // The snapshot may still be loading if the duel ended right after the lease
+        materialize(arena).whenComplete((loaded, error) -> {
+            if (error != null) {
+                quarantine(arena, error);
+                return;
             }
-            if (data.containsKey("spawnPoint2")) {
-                spawnPoint2 = deserializeLocation((Map<String, Object>) data.get("spawnPoint2"), world);
+            regenerationScheduler.submit(arena.createRegenerationJob(() -> {
+                int removed = arena.sweepEntities();
+                if (removed > 0) {
+                    plugin.getLogger().info("Removed " + removed + " leftover entities from arena " + arena.getName());
+                }
+                if (onComplete != null) {
+                    onComplete.run();
+                }
+            }));
+        });
+    }
+    
+    /**
+     * Take a leased arena that cannot be reset out of the pool. It stays in the dirty log,
+     * so the next startup repairs it before it can be leased again.
+     */
+    private void quarantine(Arena arena, Throwable error) {
+        plugin.getLogger().severe("Arena " + arena.getName() + " could not be reset and was taken out of rotation: " + error.getMessage());
+        UUID duelId = arena.getLeaseHolder();
+        if (duelId != null) {
+            arenaPool.retire(arena, duelId);
+        }
+        arena.releaseChunks(chunkTickets);
+        plugin.getArenaEntityListener().forget(arena);
+    }
+    
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+    
+    public RegenerationScheduler getRegenerationScheduler() {
+        return regenerationScheduler;
+    }
+    
+    /**
+     * Finish pending arena resets (for plugin shutdown)
+     */
+    public void shutdown() {
+        provisioner.shutdown();
+        admissionQueue.shutdown();
+        regenerationScheduler.shutdown();
+        dirtyLog.close();
+        saveArenas();
+        registry.close();
+    }
+    
+    /**
+     * Get an arena by its name (e.g. plains2)
+     */
+    public Arena getArena(String name) {
+        for (List<Arena> group : arenaGroups.values()) {
+            for (Arena arena : group) {
+                if (arena.getName().equalsIgnoreCase(name)) {
+                    return arena;
+                }
             }
-            
-            return new Arena(name, basename, world, minPoint, maxPoint, spawnPoint1, spawnPoint2);
-            
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to deserialize arena: " + e.getMessage());
-            return null;
         }
+        return null;
     }
     
     /**
-     * Serialize location to map
+     * Get all arena groups
      */
-    private Map<String, Object> serializeLocation(Location location) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("x", location.getX());
-        data.put("y", location.getY());
-        data.put("z", location.getZ());
-        data.put("yaw", location.getYaw());
-        data.put("pitch", location.getPitch());
-        return data;
+    public Set<String> getArenaGroups() {
+        return arenaGroups.keySet();
     }
     
     /**
-     * Deserialize location from map
+     * Get arenas in a group
      */
-    private Location deserializeLocation(Map<String, Object> data, org.bukkit.World world) {
-        double x = ((Number) data.get("x")).doubleValue();
-        double y = ((Number) data.get("y")).doubleValue();
-        double z = ((Number) data.get("z")).doubleValue();
-        float yaw = ((Number) data.getOrDefault("yaw", 0.0f)).floatValue();
-        float pitch = ((Number) data.getOrDefault("pitch", 0.0f)).floatValue();
-        
-        return new Location(world, x, y, z, yaw, pitch);
+    public List<Arena> getArenas(String basename) {
+        return arenaGroups.getOrDefault(basename, new ArrayList<>());
+    }
+    
+    /**
+     * Check if an arena group exists
+     */
+    public boolean hasArenaGroup(String basename) {
+        return arenaGroups.containsKey(basename);
     }
-}
\ No newline at end of file
+}
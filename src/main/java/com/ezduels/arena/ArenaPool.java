@@ -0,0 +1,280 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of leasable arenas, with the free arenas of each group held by the group's
+ * {@link ArenaSelectionPolicy} in the order they should be leased, so a lease is a poll rather
+ * than a scan. An arena is only ever free in its group once, and taking it requires a
+ * compare-and-set on the arena's lease, so two duels can never hold the same arena.
+ * How often each policy picked an arena whose chunks were still loaded is counted, from whether
+ * they were loaded when the arena was freed and none has unloaded since, so leasing scans no chunks.
+ */
+public class ArenaPool {
+
+    private final Map<String, GroupPool> groups;
+    private final Map<String, SelectionStats> selectionStats;
+    private volatile Supplier<ArenaSelectionPolicy> defaultPolicy;
+
+    public ArenaPool() {
+        this.groups = new ConcurrentHashMap<>();
+        this.selectionStats = new ConcurrentHashMap<>();
+        this.defaultPolicy = ArenaSelectionPolicy.LeastRecentlyUsed::new;
+    }
+
+    /**
+     * Set how policies are created for groups without one of their own
+     */
+    public void setDefaultPolicy(Supplier<ArenaSelectionPolicy> defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * Set the selection policy of a group, handing it the group's free arenas
+     */
+    public void setPolicy(String group, ArenaSelectionPolicy policy) {
+        GroupPool pool = getGroup(group);
+        synchronized (pool) {
+            Arena arena;
+            while ((arena = pool.policy.poll()) != null) {
+                policy.offer(arena);
+            }
+            pool.policy = policy;
+        }
+    }
+
+    /**
+     * Get the selection policy of a group
+     */
+    public ArenaSelectionPolicy getPolicy(String group) {
+        GroupPool pool = getGroup(group);
+        synchronized (pool) {
+            return pool.policy;
+        }
+    }
+
+    private GroupPool getGroup(String group) {
+        return groups.computeIfAbsent(group, name -> new GroupPool(defaultPolicy.get()));
+    }
+
+    /**
+     * Make an arena available for leasing. Does nothing if it is already registered.
+     */
+    public void register(Arena arena) {
+        GroupPool pool = getGroup(arena.getBasename());
+        synchronized (pool) {
+            if (!pool.members.add(arena)) {
+                return;
+            }
+            if (!arena.isInUse()) {
+                offer(pool, arena);
+            }
+        }
+    }
+
+    /**
+     * Remove a free arena from the pool
+     * @return false if the arena is currently leased (it stays pooled)
+     */
+    public boolean unregister(Arena arena) {
+        GroupPool pool = groups.get(arena.getBasename());
+        if (pool == null) {
+            return false;
+        }
+        synchronized (pool) {
+            if (!pool.policy.remove(arena)) {
+                return false;
+            }
+            pool.freeCount.decrementAndGet();
+            pool.members.remove(arena);
+            pool.warm.remove(arena);
+            return true;
+        }
+    }
+
+    /**
+     * Lease a free arena of a group to a duel
+     * @return the leased arena, or null if none is free
+     */
+    public Arena acquire(String group, UUID duelId) {
+        GroupPool pool = groups.get(group);
+        if (pool == null) {
+            return null;
+        }
+
+        Arena arena;
+        String policy;
+        synchronized (pool) {
+            while ((arena = pool.policy.poll()) != null) {
+                pool.freeCount.decrementAndGet();
+                if (arena.tryLease(duelId)) {
+                    break;
+                }
+                // Already leased some other way, it is offered again when released
+            }
+            policy = pool.policy.getName();
+        }
+        if (arena == null) {
+            return null;
+        }
+        pool.leased.incrementAndGet();
+        selectionStats.computeIfAbsent(policy, name -> new SelectionStats()).record(pool.warm.remove(arena));
+        return arena;
+    }
+
+    /**
+     * Lease a free arena from whichever group is least loaded
+     * @return the leased arena, or null if every group is exhausted
+     */
+    public Arena acquireLeastLoaded(UUID duelId) {
+        // Try groups from least to most loaded, a group may run dry between picking and polling
+        while (true) {
+            String best = null;
+            double bestLoad = Double.MAX_VALUE;
+            for (Map.Entry<String, GroupPool> entry : groups.entrySet()) {
+                GroupPool pool = entry.getValue();
+                if (pool.freeCount.get() <= 0) {
+                    continue;
+                }
+                double load = (double) pool.leased.get() / pool.members.size();
+                if (load < bestLoad) {
+                    bestLoad = load;
+                    best = entry.getKey();
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            Arena arena = acquire(best, duelId);
+            if (arena != null) {
+                return arena;
+            }
+        }
+    }
+
+    /**
+     * Return an arena to its group's free list. Only the duel holding the lease can release it.
+     * @return false if the duel did not hold the arena
+     */
+    public boolean release(Arena arena, UUID duelId) {
+        if (!arena.release(duelId)) {
+            return false;
+        }
+        GroupPool pool = groups.get(arena.getBasename());
+        if (pool == null || !pool.members.contains(arena)) {
+            return true; // No longer pooled
+        }
+        pool.leased.decrementAndGet();
+        synchronized (pool) {
+            offer(pool, arena);
+        }
+        return true;
+    }
+
+    /**
+     * Hand a newly free arena to its group's policy, noting whether its chunks are all loaded.
+     * Called under the group pool's lock.
+     */
+    private static void offer(GroupPool pool, Arena arena) {
+        if (arena.isWarm()) {
+            pool.warm.add(arena);
+        }
+        pool.policy.offer(arena);
+        pool.freeCount.incrementAndGet();
+    }
+
+    /**
+     * Tell a free arena's policy that some of its chunks were unloaded
+     */
+    public void cooled(Arena arena) {
+        GroupPool pool = groups.get(arena.getBasename());
+        if (pool == null || arena.isInUse()) {
+            return;
+        }
+        pool.warm.remove(arena);
+        synchronized (pool) {
+            pool.policy.cooled(arena);
+        }
+    }
+
+    /**
+     * Take a leased arena out of the pool for good, ending its lease without freeing it
+     * @return false if the duel did not hold the arena
+     */
+    public boolean retire(Arena arena, UUID duelId) {
+        GroupPool pool = groups.get(arena.getBasename());
+        if (!duelId.equals(arena.getLeaseHolder())) {
+            return false;
+        }
+        // Removed before the lease ends, so a release racing with this cannot free it again
+        if (pool != null && pool.members.remove(arena)) {
+            pool.leased.decrementAndGet();
+        }
+        return arena.release(duelId);
+    }
+
+    public int getFreeCount(String group) {
+        GroupPool pool = groups.get(group);
+        return pool == null ? 0 : pool.freeCount.get();
+    }
+
+    public int getLeasedCount(String group) {
+        GroupPool pool = groups.get(group);
+        return pool == null ? 0 : pool.leased.get();
+    }
+
+    public int getSize(String group) {
+        GroupPool pool = groups.get(group);
+        return pool == null ? 0 : pool.members.size();
+    }
+
+    /**
+     * Selection counts per policy name, including policies no longer in use
+     */
+    public Map<String, SelectionStats> getSelectionStats() {
+        return selectionStats;
+    }
+
+    /**
+     * How many arenas a policy picked, and how many of them had all their chunks loaded
+     */
+    public static final class SelectionStats {
+        private final AtomicLong selections = new AtomicLong();
+        private final AtomicLong warmHits = new AtomicLong();
+
+        private void record(boolean warm) {
+            selections.incrementAndGet();
+            if (warm) {
+                warmHits.incrementAndGet();
+            }
+        }
+
+        public long getSelections() {
+            return selections.get();
+        }
+
+        public long getWarmHits() {
+            return warmHits.get();
+        }
+    }
+
+    private static final class GroupPool {
+        private final Set<Arena> members = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger freeCount = new AtomicInteger(); // Readable without the lock
+        private final AtomicInteger leased = new AtomicInteger();
+        private final Set<Arena> warm = ConcurrentHashMap.newKeySet(); // Free arenas with no chunk unloaded since they were freed
+        private ArenaSelectionPolicy policy; // Holds the free arenas, guarded by the group pool
+
+        private GroupPool(ArenaSelectionPolicy policy) {
+            this.policy = policy;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.ezduels.arena;
+
+import com.ezduels.EzDuelsPlugin;
+import com.ezduels.config.Settings;
+import com.ezduels.model.Arena;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grows arena groups on demand by stamping extra copies of a group's template arena
+ * into the dedicated arenas world, laid out on a grid.
+ * Copies are pasted through the {@link RegenerationScheduler} ahead of demand so a few
+ * spare arenas are always ready, up to a per-group cap, and copies left idle for longer
+ * than the cooldown are retired again.
+ */
+public class ArenaProvisioner {
+
+    private static final int GRID_ROW_LENGTH = 32; // Copies per grid row before starting the next one
+    private static final int GRID_ORIGIN = 10000;  // Keep copies clear of anything built near spawn
+
+    private final EzDuelsPlugin plugin;
+    private final ArenaManager arenaManager;
+    private final BitSet usedSlots;
+    private final Map<Arena, Integer> copySlots;
+    private final Map<String, Integer> pendingCopies;
+    private BukkitTask task;
+    private boolean warnedMissingWorld;
+
+    public ArenaProvisioner(EzDuelsPlugin plugin, ArenaManager arenaManager) {
+        this.plugin = plugin;
+        this.arenaManager = arenaManager;
+        this.usedSlots = new BitSet();
+        this.copySlots = new HashMap<>();
+        this.pendingCopies = new HashMap<>();
+    }
+
+    /**
+     * Start the periodic capacity check
+     */
+    public void start() {
+        Settings.Elastic elastic = plugin.getSettings().arenas().elastic();
+        if (!elastic.enabled()) {
+            return;
+        }
+        long interval = elastic.checkInterval() * 20L;
+        task = new BukkitRunnable() {
+            @Override
+            public void run() {
+                for (String group : arenaManager.getArenaGroups()) {
+                    ensureCapacity(group);
+                }
+                retireIdleCopies();
+            }
+        }.runTaskTimer(plugin, interval, interval);
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Called when a duel found no free arena in a group, so a copy is started right away
+     */
+    public void onExhausted(String group) {
+        if (task != null) {
+            ensureCapacity(group);
+        }
+    }
+
+    /**
+     * Provision copies until the group has enough spare arenas (ready or being pasted)
+     */
+    private void ensureCapacity(String group) {
+        Settings.Elastic elastic = plugin.getSettings().arenas().elastic();
+        int spare = elastic.spareCopies();
+        int maxCopies = elastic.maxCopies();
+
+        int pending = pendingCopies.getOrDefault(group, 0);
+        int free = arenaManager.getArenaPool().getFreeCount(group) + pending;
+        int copies = countCopies(group) + pending;
+        while (free < spare && copies < maxCopies) {
+            if (!provisionCopy(group)) {
+                return;
+            }
+            free++;
+            copies++;
+        }
+    }
+
+    /**
+     * Stamp a new copy of a group's template into the dedicated world
+     * @return false if no copy could be started
+     */
+    private boolean provisionCopy(String group) {
+        Arena template = getTemplate(group);
+        if (template == null) {
+            return false;
+        }
+
+        String worldName = plugin.getSettings().arenas().dedicatedWorld();
+        World world = plugin.getServer().getWorld(worldName);
+        if (world == null) {
+            if (!warnedMissingWorld) {
+                plugin.getLogger().warning("Dedicated arena world '" + worldName + "' is not loaded, arena copies cannot be provisioned");
+                warnedMissingWorld = true;
+            }
+            return false;
+        }
+
+        int spacing = plugin.getSettings().arenas().elastic().gridSpacing();
+        int minX = template.getMinPoint().getBlockX();
+        int minZ = template.getMinPoint().getBlockZ();
+        // Room for the copy after its cell start is rounded down to a chunk section
+        int extentX = (minX & 15) + template.getMaxPoint().getBlockX() - minX + 1 + 15;
+        int extentZ = (minZ & 15) + template.getMaxPoint().getBlockZ() - minZ + 1 + 15;
+        if (extentX >= spacing || extentZ >= spacing) {
+            plugin.getLogger().warning("Arena " + template.getName() + " is larger than arenas.elastic.grid-spacing, it cannot be copied");
+            return false;
+        }
+
+        // Place the copy in the next free grid cell, keeping the template's height and its position
+        // within a chunk section, so a streamed template's section file lines up with the copy's sections
+        int slot = usedSlots.nextClearBit(0);
+        int dx = ((GRID_ORIGIN + (slot % GRID_ROW_LENGTH) * spacing) & ~15) - (minX & ~15);
+        int dy = 0;
+        int dz = ((GRID_ORIGIN + (slot / GRID_ROW_LENGTH) * spacing) & ~15) - (minZ & ~15);
+
+        Arena copy = new Arena(group + "-copy" + slot, group, world,
+                translate(template.getMinPoint(), world, dx, dy, dz),
+                translate(template.getMaxPoint(), world, dx, dy, dz),
+                translate(template.getSpawnPoint1(), world, dx, dy, dz),
+                translate(template.getSpawnPoint2(), world, dx, dy, dz));
+        copy.setEphemeral(true);
+        copy.setSnapshot(arenaManager.getSnapshotStore().intern(template.getSnapshot()));
+
+        usedSlots.set(slot);
+        copySlots.put(copy, slot);
+        pendingCopies.merge(group, 1, Integer::sum);
+        arenaManager.addArena(copy);
+
+        // Paste the template in the background, the copy becomes leasable once it is complete
+        arenaManager.getRegenerationScheduler().submit(copy.createFullRegenerationJob(() -> {
+            pendingCopies.merge(group, -1, Integer::sum);
+            arenaManager.registerArena(copy);
+            plugin.getLogger().info("Provisioned arena copy " + copy.getName());
+        }));
+        return true;
+    }
+
+    /**
+     * Retire copies that have been free for longer than the cooldown, keeping the spare arenas
+     */
+    private void retireIdleCopies() {
+        Settings.Elastic elastic = plugin.getSettings().arenas().elastic();
+        long cooldown = elastic.idleRetireSeconds() * 1000L;
+        int spare = elastic.spareCopies();
+        long now = System.currentTimeMillis();
+
+        for (Arena copy : List.copyOf(copySlots.keySet())) {
+            String group = copy.getBasename();
+            if (copy.isInUse() || copy.isResetting() || now - copy.getLastReleasedAt() < cooldown) {
+                continue;
+            }
+            if (arenaManager.getArenaPool().getFreeCount(group) <= spare) {
+                continue;
+            }
+            if (!arenaManager.getArenaPool().unregister(copy)) {
+                continue; // Leased in the meantime
+            }
+            // Remove its blocks before the grid cell can be reused, by a copy of any group
+            copy.sweepEntities();
+            arenaManager.getRegenerationScheduler().submit(copy.createClearJob(() -> {
+                arenaManager.removeArena(copy);
+                arenaManager.getSnapshotStore().release(copy.getSnapshot());
+                usedSlots.clear(copySlots.remove(copy));
+                plugin.getLogger().info("Retired idle arena copy " + copy.getName());
+            }));
+        }
+    }
+
+    /**
+     * Number of provisioned copies of a group
+     */
+    public int countCopies(String group) {
+        int count = 0;
+        for (Arena copy : copySlots.keySet()) {
+            if (copy.getBasename().equals(group)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The arena copies of a group are made from: its first admin-defined, fully set up arena.
+     * Its snapshot is loaded first if it has not been leased yet.
+     */
+    private Arena getTemplate(String group) {
+        for (Arena arena : arenaManager.getArenas(group)) {
+            if (!arena.isEphemeral() && arenaManager.hasSnapshot(arena)
+                    && arena.getSpawnPoint1() != null && arena.getSpawnPoint2() != null) {
+                if (!arena.hasSnapshot()) {
+                    arenaManager.materialize(arena); // Copied on a later check
+                    return null;
+                }
+                return arena;
+            }
+        }
+        return null;
+    }
+
+    private static Location translate(Location location, World world, int dx, int dy, int dz) {
+        return new Location(world, location.getX() + dx, location.getY() + dy, location.getZ() + dz,
+                location.getYaw(), location.getPitch());
+    }
+}
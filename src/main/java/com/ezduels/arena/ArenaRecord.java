@@ -0,0 +1,144 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+import org.bukkit.Location;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Saved definition of an arena: its name, group, world, bounds and spawn points.
+ * Records are what the {@link ArenaRegistry} stores; they are independent of loaded
+ * worlds, so they can be read and written off the main thread.
+ */
+public record ArenaRecord(String name, String basename, String world, Position minPoint, Position maxPoint,
+                          Position spawnPoint1, Position spawnPoint2) {
+
+    private static final int HAS_SPAWN_1 = 1;
+    private static final int HAS_SPAWN_2 = 2;
+
+    /**
+     * A location without its world
+     */
+    public record Position(double x, double y, double z, float yaw, float pitch) {
+
+        public static Position of(Location location) {
+            return location == null ? null : new Position(location.getX(), location.getY(), location.getZ(),
+                    location.getYaw(), location.getPitch());
+        }
+
+        public Location toLocation(org.bukkit.World world) {
+            return new Location(world, x, y, z, yaw, pitch);
+        }
+
+        private void write(DataOutput out) throws IOException {
+            out.writeDouble(x);
+            out.writeDouble(y);
+            out.writeDouble(z);
+            out.writeFloat(yaw);
+            out.writeFloat(pitch);
+        }
+
+        private static Position read(DataInput in) throws IOException {
+            return new Position(in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat());
+        }
+
+        private Map<String, Object> toYaml() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("x", x);
+            data.put("y", y);
+            data.put("z", z);
+            data.put("yaw", yaw);
+            data.put("pitch", pitch);
+            return data;
+        }
+
+        private static Position fromYaml(Map<String, Object> data) {
+            return new Position(((Number) data.get("x")).doubleValue(),
+                    ((Number) data.get("y")).doubleValue(),
+                    ((Number) data.get("z")).doubleValue(),
+                    ((Number) data.getOrDefault("yaw", 0.0f)).floatValue(),
+                    ((Number) data.getOrDefault("pitch", 0.0f)).floatValue());
+        }
+    }
+
+    /**
+     * Record an arena's current definition
+     */
+    public static ArenaRecord of(Arena arena) {
+        return new ArenaRecord(arena.getName(), arena.getBasename(), arena.getWorld().getName(),
+                Position.of(arena.getMinPoint()), Position.of(arena.getMaxPoint()),
+                Position.of(arena.getSpawnPoint1()), Position.of(arena.getSpawnPoint2()));
+    }
+
+    /**
+     * Build the arena in a loaded world
+     */
+    public Arena toArena(org.bukkit.World world) {
+        return new Arena(name, basename, world, minPoint.toLocation(world), maxPoint.toLocation(world),
+                spawnPoint1 == null ? null : spawnPoint1.toLocation(world),
+                spawnPoint2 == null ? null : spawnPoint2.toLocation(world));
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(basename);
+        out.writeUTF(world);
+        minPoint.write(out);
+        maxPoint.write(out);
+        out.writeByte((spawnPoint1 != null ? HAS_SPAWN_1 : 0) | (spawnPoint2 != null ? HAS_SPAWN_2 : 0));
+        if (spawnPoint1 != null) {
+            spawnPoint1.write(out);
+        }
+        if (spawnPoint2 != null) {
+            spawnPoint2.write(out);
+        }
+    }
+
+    static ArenaRecord read(DataInput in) throws IOException {
+        String name = in.readUTF();
+        String basename = in.readUTF();
+        String world = in.readUTF();
+        Position minPoint = Position.read(in);
+        Position maxPoint = Position.read(in);
+        int flags = in.readUnsignedByte();
+        Position spawnPoint1 = (flags & HAS_SPAWN_1) != 0 ? Position.read(in) : null;
+        Position spawnPoint2 = (flags & HAS_SPAWN_2) != 0 ? Position.read(in) : null;
+        return new ArenaRecord(name, basename, world, minPoint, maxPoint, spawnPoint1, spawnPoint2);
+    }
+
+    /**
+     * The arena as written to arenas.yml
+     */
+    public Map<String, Object> toYaml() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", name);
+        data.put("basename", basename);
+        data.put("world", world);
+        data.put("minPoint", minPoint.toYaml());
+        data.put("maxPoint", maxPoint.toYaml());
+        if (spawnPoint1 != null) {
+            data.put("spawnPoint1", spawnPoint1.toYaml());
+        }
+        if (spawnPoint2 != null) {
+            data.put("spawnPoint2", spawnPoint2.toYaml());
+        }
+        return data;
+    }
+
+    /**
+     * Read an arena from arenas.yml
+     * @throws ClassCastException or NullPointerException if the entry is malformed
+     */
+    @SuppressWarnings("unchecked")
+    public static ArenaRecord fromYaml(Map<String, Object> data) {
+        return new ArenaRecord((String) data.get("name"), (String) data.get("basename"), (String) data.get("world"),
+                Position.fromYaml((Map<String, Object>) data.get("minPoint")),
+                Position.fromYaml((Map<String, Object>) data.get("maxPoint")),
+                data.containsKey("spawnPoint1") ? Position.fromYaml((Map<String, Object>) data.get("spawnPoint1")) : null,
+                data.containsKey("spawnPoint2") ? Position.fromYaml((Map<String, Object>) data.get("spawnPoint2")) : null);
+    }
+}
@@ -0,0 +1,301 @@
+package com.ezduels.arena;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Saved arena definitions, kept in a versioned binary log (arenas.dat).
+ * Saving an arena appends one checksummed record, the latest record of a name wins,
+ * and the log is rewritten once it holds mostly superseded records. arenas.yml is
+ * written on shutdown for hand-editing, and imported on startup if it was changed
+ * since, so editing it while the server is stopped still works. If it cannot be
+ * imported, the log is loaded instead and arenas.yml is kept as it is until fixed.
+ */
+public class ArenaRegistry {
+
+    private static final int MAGIC = 0x455A4152; // "EZAR"
+    private static final int VERSION = 1;
+    private static final int COMPACT_SLACK = 64; // Superseded records tolerated before rewriting the log
+
+    private final File file;
+    private final File yamlFile;
+    private final Logger logger;
+    private final Map<String, ArenaRecord> records;
+    private DataOutputStream out;
+    private int recordsWritten;
+    private boolean keepYaml; // arenas.yml failed to import, so it is not overwritten
+
+    public ArenaRegistry(File file, File yamlFile, Logger logger) {
+        this.file = file;
+        this.yamlFile = yamlFile;
+        this.logger = logger;
+        this.records = new LinkedHashMap<>();
+    }
+
+    /**
+     * Read the saved arenas and start appending to the log
+     */
+    public Collection<ArenaRecord> load() {
+        records.clear();
+        keepYaml = false;
+        boolean rewrite = false;
+        if (yamlFile.exists() && (!file.exists() || yamlFile.lastModified() > file.lastModified())) {
+            try {
+                for (ArenaRecord record : readYaml(yamlFile)) {
+                    records.put(record.name(), record);
+                }
+                logger.info("Imported " + records.size() + " arenas from " + yamlFile.getName());
+                rewrite = true;
+            } catch (IOException | RuntimeException e) {
+                // Keep both files, the edited one must not be replaced by an empty export
+                logger.severe("Failed to import " + yamlFile.getName() + ": " + e.getMessage()
+                        + ". Loading " + file.getName() + " instead, " + yamlFile.getName() + " is kept until it is fixed");
+                records.clear();
+                keepYaml = true;
+            }
+        }
+        if (!rewrite) {
+            LogContents contents = readLog(file, logger);
+            records.putAll(contents.records());
+            recordsWritten = contents.recordCount();
+            rewrite = contents.torn() || recordsWritten > records.size() + COMPACT_SLACK;
+        }
+
+        if (rewrite || !file.exists()) {
+            compact();
+        } else {
+            openForAppend();
+        }
+        return records.values();
+    }
+
+    /**
+     * Save one arena, replacing any earlier record of the same name
+     */
+    public void put(ArenaRecord record) {
+        records.put(record.name(), record);
+        if (out == null) {
+            return;
+        }
+        try {
+            writeRecord(out, record);
+            out.flush();
+            recordsWritten++;
+        } catch (IOException e) {
+            logger.severe("Failed to write " + file.getName() + ": " + e.getMessage());
+        }
+        if (recordsWritten > records.size() + COMPACT_SLACK) {
+            compact();
+        }
+    }
+
+    /**
+     * Save many arenas at once (on shutdown): the records are replaced in memory and the log
+     * is rewritten once, rather than appending and flushing a record per arena
+     */
+    public void putAll(Collection<ArenaRecord> changed) {
+        for (ArenaRecord record : changed) {
+            records.put(record.name(), record);
+        }
+        compact();
+    }
+
+    /**
+     * Rewrite the log as one record per arena and reopen it for appending
+     */
+    public void compact() {
+        close();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                writeHeader(tempOut);
+                for (ArenaRecord record : records.values()) {
+                    writeRecord(tempOut, record);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            recordsWritten = records.size();
+            openForAppend();
+        } catch (IOException e) {
+            logger.severe("Failed to compact " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write every arena to arenas.yml, marked as no newer than the log so it is not imported back.
+     * An arenas.yml that failed to import is left as it is, still newer than the log, so it is
+     * imported once fixed.
+     */
+    public void exportYaml() {
+        if (keepYaml) {
+            yamlFile.setLastModified(Math.max(System.currentTimeMillis(), file.lastModified() + 1000));
+            return;
+        }
+        try {
+            writeYaml(yamlFile, records.values());
+            yamlFile.setLastModified(file.lastModified());
+        } catch (IOException e) {
+            logger.severe("Failed to export " + yamlFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close " + file.getName() + ": " + e.getMessage());
+        }
+        out = null;
+    }
+
+    private void openForAppend() {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } catch (IOException e) {
+            logger.severe("Failed to open " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Append one record: its length, the record itself and a CRC32 of it, so a torn write is detected
+     */
+    static void writeRecord(DataOutputStream out, ArenaRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        record.write(new DataOutputStream(bytes));
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Replay a log, stopping at the first torn or corrupt record
+     */
+    static LogContents readLog(File file, Logger logger) {
+        Map<String, ArenaRecord> records = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return new LogContents(records, 0, false);
+        }
+        int count = 0;
+        boolean torn = false;
+        long fileLength = file.length();
+        long position = 2 * Integer.BYTES; // After the header
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not an arena registry");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version);
+            }
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                position += Integer.BYTES;
+                // Only trust a length that fits in the rest of the file, a corrupt one could ask for gigabytes
+                if (length < 0 || length > fileLength - position - Integer.BYTES) {
+                    throw new IOException("record length " + length + " runs past the end of the file");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                position += length + Integer.BYTES;
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("corrupt record");
+                }
+                ArenaRecord record = ArenaRecord.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+                records.put(record.name(), record);
+                count++;
+            }
+        } catch (EOFException e) {
+            // A crash mid-append leaves a partial last record, everything before it is intact
+            logger.warning("Stopped reading " + file.getName() + " after " + count + " records: truncated record");
+            torn = true;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Stopped reading " + file.getName() + " after " + count + " records: " + e.getMessage());
+            torn = true;
+        }
+        return new LogContents(records, count, torn);
+    }
+
+    /**
+     * Read arenas.yml: arena groups mapping to lists of arenas
+     */
+    @SuppressWarnings("unchecked")
+    static List<ArenaRecord> readYaml(File yamlFile) throws IOException {
+        List<ArenaRecord> records = new ArrayList<>();
+        try (FileReader reader = new FileReader(yamlFile)) {
+            Map<String, Object> data = newYaml().load(reader);
+            if (data == null) {
+                return records;
+            }
+            for (Object group : data.values()) {
+                for (Map<String, Object> arenaData : (List<Map<String, Object>>) group) {
+                    records.add(ArenaRecord.fromYaml(arenaData));
+                }
+            }
+        }
+        return records;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void writeYaml(File yamlFile, Collection<ArenaRecord> records) throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (ArenaRecord record : records) {
+            ((List<Object>) data.computeIfAbsent(record.basename(), group -> new ArrayList<>())).add(record.toYaml());
+        }
+        yamlFile.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(yamlFile)) {
+            newYaml().dump(data, writer);
+        }
+    }
+
+    private static Yaml newYaml() {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(2);
+        options.setPrettyFlow(true);
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return new Yaml(options);
+    }
+
+    record LogContents(Map<String, ArenaRecord> records, int recordCount, boolean torn) {
+    }
+}
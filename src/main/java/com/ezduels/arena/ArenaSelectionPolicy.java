@@ -0,0 +1,173 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Holds the free arenas of one group, in the order a duel should be given them.
+ * The {@link ArenaPool} offers an arena whenever it becomes free and polls one for every lease,
+ * so each policy keeps its own structure and picking an arena never scans the group. The pool
+ * still takes the arena with a compare-and-set on its lease, and calls a policy under its
+ * group's lock, so implementations need no synchronization of their own.
+ */
+public interface ArenaSelectionPolicy {
+
+    /**
+     * An arena became free (registered or released)
+     */
+    void offer(Arena arena);
+
+    /**
+     * Take the free arena the next duel should get
+     * @return the arena, or null if none is free
+     */
+    Arena poll();
+
+    /**
+     * Take a free arena out (it is leaving the pool)
+     * @return false if the arena was not free
+     */
+    boolean remove(Arena arena);
+
+    /**
+     * Chunks of a free arena were unloaded
+     */
+    default void cooled(Arena arena) {
+    }
+
+    /**
+     * Name shown in statistics and used in the config
+     */
+    String getName();
+
+    /**
+     * Create a policy from its config name
+     * @return the policy, or null if the name is unknown
+     */
+    static ArenaSelectionPolicy byName(String name) {
+        return switch (name.toLowerCase()) {
+            case "warm-first" -> new WarmFirst();
+            case "lru" -> new LeastRecentlyUsed();
+            case "round-robin" -> new RoundRobin();
+            default -> null;
+        };
+    }
+
+    /**
+     * Prefer arenas whose chunks were all still loaded when they were freed, most recently used
+     * first, so a small working set stays warm. Arenas drop out of the warm set as their chunks
+     * unload. Falls back to the least recently used arena when none is warm.
+     */
+    final class WarmFirst implements ArenaSelectionPolicy {
+        private final LinkedHashSet<Arena> free = new LinkedHashSet<>(); // In the order they were freed
+        private final LinkedHashSet<Arena> warm = new LinkedHashSet<>(); // Subset of free, same order
+
+        @Override
+        public void offer(Arena arena) {
+            if (free.add(arena) && arena.isWarm()) {
+                warm.add(arena);
+            }
+        }
+
+        @Override
+        public Arena poll() {
+            if (!warm.isEmpty()) {
+                Arena arena = warm.removeLast();
+                free.remove(arena);
+                return arena;
+            }
+            return free.isEmpty() ? null : free.removeFirst();
+        }
+
+        @Override
+        public boolean remove(Arena arena) {
+            warm.remove(arena);
+            return free.remove(arena);
+        }
+
+        @Override
+        public void cooled(Arena arena) {
+            warm.remove(arena);
+        }
+
+        @Override
+        public String getName() {
+            return "warm-first";
+        }
+    }
+
+    /**
+     * Take the arena that has been free the longest, spreading duels over every arena
+     */
+    final class LeastRecentlyUsed implements ArenaSelectionPolicy {
+        private final LinkedHashSet<Arena> free = new LinkedHashSet<>(); // In the order they were freed
+
+        @Override
+        public void offer(Arena arena) {
+            free.add(arena);
+        }
+
+        @Override
+        public Arena poll() {
+            return free.isEmpty() ? null : free.removeFirst();
+        }
+
+        @Override
+        public boolean remove(Arena arena) {
+            return free.remove(arena);
+        }
+
+        @Override
+        public String getName() {
+            return "lru";
+        }
+    }
+
+    /**
+     * Cycle through the arenas in the order they were first offered, skipping leased ones
+     */
+    final class RoundRobin implements ArenaSelectionPolicy {
+        private final Map<Arena, Integer> positions = new HashMap<>(); // Every pooled arena
+        private final TreeMap<Integer, Arena> free = new TreeMap<>();
+        private int nextPosition;
+        private int cursor = -1; // Position of the last arena handed out
+
+        @Override
+        public void offer(Arena arena) {
+            free.put(positions.computeIfAbsent(arena, key -> nextPosition++), arena);
+        }
+
+        @Override
+        public Arena poll() {
+            Map.Entry<Integer, Arena> next = free.higherEntry(cursor);
+            if (next == null) {
+                next = free.firstEntry();
+            }
+            if (next == null) {
+                return null;
+            }
+            cursor = next.getKey();
+            free.remove(cursor);
+            return next.getValue();
+        }
+
+        @Override
+        public boolean remove(Arena arena) {
+            Integer position = positions.get(arena);
+            if (position == null || free.remove(position) == null) {
+                return false;
+            }
+            positions.remove(arena);
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "round-robin";
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package com.ezduels.arena;
+
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.bukkit.Bukkit;
+import org.enginehub.linbus.stream.LinBinaryIO;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.enginehub.linbus.tree.LinRootEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compact, immutable copy of an arena's blocks used for regeneration.
+ * The arena is cut into 16x16x16 sections stored x, then z, then y (y innermost within a
+ * section too), the order a full reset walks them. Block states
+ * are stored once in an arena-wide palette and every section keeps a small local palette
+ * plus bit-packed indices into it, or a single palette entry if the section is uniform.
+ * Blocks carrying NBT (chests, signs, banners...) are kept separately in a sorted sparse table.
+ * Snapshots are position-independent and identified by a hash of their content, so arenas
+ * built from the same template can share one instance (see {@link SnapshotStore}).
+ * <p>
+ * Very large arenas keep their sections on disk instead: {@link #write} streams sections to a
+ * file as they are encoded and {@link #map} memory-maps it, leaving only the palette, the
+ * block entities and one offset per section on the heap. Blocks are then decoded straight
+ * from the mapping. Section files are cut along the world's chunk sections, so the sections at
+ * the arena's edges may be partial and a full reset reads the file front to back, one record
+ * per section. Heap snapshots start their sections at the arena's minimum corner instead, so
+ * identical arenas share them wherever they are placed.
+ */
+public final class ArenaSnapshot {
+
+    private static final int SECTION_SIZE = 16;
+    private static final int FILE_MAGIC = 0x455A534E; // "EZSN"
+    private static final int FILE_VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+
+    private final int offsetX; // Position of the minimum corner within its world section (0-15), 0 on the heap
+    private final int offsetY;
+    private final int offsetZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int sectionsY;
+    private final int sectionsZ;
+    private final BlockState[] palette;
+    private final int[][] sectionPalettes; // Section local index -> arena palette index
+    private final long[][] sectionData;    // Packed local indices, null for uniform sections
+    private final byte[] sectionBits;
+    private final ByteBuffer mapped;       // Section records of a disk-backed snapshot, null on the heap
+    private final int[] sectionOffsets;   // Where each section record starts in the mapping
+    private final int[] blockEntityIndices; // Sorted linear block indices
+    private final BaseBlock[] blockEntities;
+    private final String contentHash;
+
+    private ArenaSnapshot(int offsetX, int offsetY, int offsetZ, int sizeX, int sizeY, int sizeZ,
+                          BlockState[] palette, int[][] sectionPalettes, long[][] sectionData, byte[] sectionBits,
+                          ByteBuffer mapped, int[] sectionOffsets, int[] blockEntityIndices, BaseBlock[] blockEntities,
+                          String contentHash) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.offsetZ = offsetZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.sectionsY = sectionCount(offsetY, sizeY);
+        this.sectionsZ = sectionCount(offsetZ, sizeZ);
+        this.palette = palette;
+        this.sectionPalettes = sectionPalettes;
+        this.sectionData = sectionData;
+        this.sectionBits = sectionBits;
+        this.mapped = mapped;
+        this.sectionOffsets = sectionOffsets;
+        this.blockEntityIndices = blockEntityIndices;
+        this.blockEntities = blockEntities;
+        this.contentHash = contentHash != null ? contentHash : computeHash();
+    }
+
+    /**
+     * Supplies the block at a position relative to the arena's minimum corner
+     */
+    @FunctionalInterface
+    public interface BlockSource {
+        BaseBlock getBlock(int x, int y, int z);
+    }
+
+    /**
+     * Encode a snapshot of a whole clipboard, relative to the clipboard's minimum corner
+     */
+    public static ArenaSnapshot fromClipboard(Clipboard clipboard) {
+        BlockVector3 origin = clipboard.getRegion().getMinimumPoint();
+        BlockVector3 size = clipboard.getDimensions();
+        return encode(size.x(), size.y(), size.z(), (x, y, z) -> clipboard.getFullBlock(origin.add(x, y, z)));
+    }
+
+    /**
+     * Encode a snapshot of the given size, reading every block from the source once.
+     * Sections start at the minimum corner, wherever the arena sits in the world.
+     */
+    public static ArenaSnapshot encode(int sizeX, int sizeY, int sizeZ, BlockSource source) {
+        int sectionCount = sectionCount(0, sizeX) * sectionCount(0, sizeY) * sectionCount(0, sizeZ);
+        int[][] sectionPalettes = new int[sectionCount][];
+        long[][] sectionData = new long[sectionCount][];
+        byte[] sectionBits = new byte[sectionCount];
+        Encoded encoded;
+        try {
+            encoded = encodeSections(0, 0, 0, sizeX, sizeY, sizeZ, source, (section, local, data, bits) -> {
+                sectionPalettes[section] = local;
+                sectionData[section] = data;
+                sectionBits[section] = (byte) bits;
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Nothing is written anywhere
+        }
+        return new ArenaSnapshot(0, 0, 0, sizeX, sizeY, sizeZ, encoded.palette(), sectionPalettes,
+                sectionData, sectionBits, null, null, encoded.blockEntityIndices(), encoded.blockEntities(), null);
+    }
+
+    /**
+     * Encode a snapshot straight into a file, one section at a time, so the arena never has
+     * to fit in memory. Load it with {@link #map}.
+     * <p>
+     * Layout: header (magic, version, offset, size), the section records in reset order, then the
+     * palette, the block entities and the section offsets, and finally where that metadata starts.
+     * @param offsetX where the minimum corner sits within its world section (its x coordinate and 15), same for y and z
+     */
+    public static void write(File file, int offsetX, int offsetY, int offsetZ, int sizeX, int sizeY, int sizeZ,
+                             BlockSource source) throws IOException {
+        int sectionCount = sectionCount(offsetX, sizeX) * sectionCount(offsetY, sizeY) * sectionCount(offsetZ, sizeZ);
+        int[] offsets = new int[sectionCount];
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        file.getParentFile().mkdirs();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(offsetX);
+            out.writeInt(offsetY);
+            out.writeInt(offsetZ);
+            out.writeInt(sizeX);
+            out.writeInt(sizeY);
+            out.writeInt(sizeZ);
+
+            Encoded encoded = encodeSections(offsetX, offsetY, offsetZ, sizeX, sizeY, sizeZ, source, (section, local, data, bits) -> {
+                if (out.size() == Integer.MAX_VALUE) { // Saturated, offsets no longer fit the mapping
+                    throw new IOException("Arena is too large for a disk snapshot");
+                }
+                offsets[section] = out.size();
+                out.writeInt(local.length);
+                out.writeByte(bits);
+                for (int value : local) {
+                    out.writeInt(value);
+                }
+                if (data != null) {
+                    for (long value : data) {
+                        out.writeLong(value);
+                    }
+                }
+            });
+
+            long metadataStart = out.size();
+            out.writeInt(encoded.palette().length);
+            for (BlockState state : encoded.palette()) {
+                out.writeUTF(state.getAsString());
+            }
+            out.writeInt(encoded.blockEntities().length);
+            for (int i = 0; i < encoded.blockEntities().length; i++) {
+                BaseBlock block = encoded.blockEntities()[i];
+                out.writeInt(encoded.blockEntityIndices()[i]);
+                out.writeUTF(block.toImmutableState().getAsString());
+                LinBinaryIO.write(out, new LinRootEntry("", block.getNbt()));
+            }
+            out.writeInt(sectionCount);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeLong(metadataStart);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Whether a file was written by {@link #write} in the current format, so {@link #map} can read it
+     */
+    public static boolean isCurrentFormat(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            return file.length() >= HEADER_SIZE + Long.BYTES && in.readInt() == FILE_MAGIC && in.readInt() == FILE_VERSION;
+        }
+    }
+
+    /**
+     * Memory-map a snapshot written by {@link #write}
+     */
+    public static ArenaSnapshot map(File file) throws IOException {
+        return map(file, ArenaSnapshot::parseState);
+    }
+
+    /**
+     * Memory-map a snapshot, reading its block states with the given parser (tests have no server to parse them)
+     */
+    static ArenaSnapshot map(File file, Function<String, BlockState> stateParser) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is too large: " + file.getName());
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER_SIZE + Long.BYTES || mapped.getInt(0) != FILE_MAGIC || mapped.getInt(4) != FILE_VERSION) {
+                throw new IOException("Not an arena snapshot: " + file.getName());
+            }
+            int offsetX = mapped.getInt(8);
+            int offsetY = mapped.getInt(12);
+            int offsetZ = mapped.getInt(16);
+            int sizeX = mapped.getInt(20);
+            int sizeY = mapped.getInt(24);
+            int sizeZ = mapped.getInt(28);
+            long metadataStart = mapped.getLong((int) size - Long.BYTES);
+
+            channel.position(metadataStart);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            BlockState[] palette = new BlockState[in.readInt()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = stateParser.apply(in.readUTF());
+            }
+            int[] blockEntityIndices = new int[in.readInt()];
+            BaseBlock[] blockEntities = new BaseBlock[blockEntityIndices.length];
+            for (int i = 0; i < blockEntities.length; i++) {
+                blockEntityIndices[i] = in.readInt();
+                BlockState state = stateParser.apply(in.readUTF());
+                LinCompoundTag nbt = LinRootEntry.readFrom(LinBinaryIO.read(in)).value();
+                blockEntities[i] = state.toBaseBlock(nbt);
+            }
+            int[] sectionOffsets = new int[in.readInt()];
+            for (int i = 0; i < sectionOffsets.length; i++) {
+                sectionOffsets[i] = in.readInt();
+            }
+
+            // Hash the file itself, it is written deterministically from the content
+            MessageDigest digest = newDigest();
+            digest.update(mapped.duplicate());
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+
+            return new ArenaSnapshot(offsetX, offsetY, offsetZ, sizeX, sizeY, sizeZ, palette, null, null, null,
+                    mapped, sectionOffsets, blockEntityIndices, blockEntities, contentHash);
+        }
+    }
+
+    /**
+     * Receives each encoded section: its local palette and packed indices (null and 0 bits if uniform)
+     */
+    @FunctionalInterface
+    private interface SectionSink {
+        void accept(int section, int[] local, long[] data, int bits) throws IOException;
+    }
+
+    private record Encoded(BlockState[] palette, int[] blockEntityIndices, BaseBlock[] blockEntities) {
+    }
+
+    /**
+     * Read every block from the source once, section by section in reset order, handing each encoded
+     * section to the sink
+     */
+    private static Encoded encodeSections(int offsetX, int offsetY, int offsetZ, int sizeX, int sizeY, int sizeZ,
+                                          BlockSource source, SectionSink sink) throws IOException {
+        int sectionsX = sectionCount(offsetX, sizeX);
+        int sectionsY = sectionCount(offsetY, sizeY);
+        int sectionsZ = sectionCount(offsetZ, sizeZ);
+
+        Map<BlockState, Integer> paletteIndex = new HashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        List<Integer> entityIndices = new ArrayList<>();
+        List<BaseBlock> entities = new ArrayList<>();
+
+        int[] values = new int[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE];
+        int[] localIndex = new int[16];
+        for (int sx = 0; sx < sectionsX; sx++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                for (int sy = 0; sy < sectionsY; sy++) {
+                    int section = sectionIndex(sx, sy, sz, sectionsY, sectionsZ);
+                    int startX = sectionStart(sx, offsetX), startY = sectionStart(sy, offsetY), startZ = sectionStart(sz, offsetZ);
+                    int dx = sectionLength(sx, offsetX, sizeX);
+                    int dy = sectionLength(sy, offsetY, sizeY);
+                    int dz = sectionLength(sz, offsetZ, sizeZ);
+
+                    // Read the section into arena palette indices, in the order of sectionBlockIndex
+                    int count = 0;
+                    for (int lx = 0; lx < dx; lx++) {
+                        for (int lz = 0; lz < dz; lz++) {
+                            for (int ly = 0; ly < dy; ly++) {
+                                int x = startX + lx;
+                                int y = startY + ly;
+                                int z = startZ + lz;
+                                BaseBlock block = source.getBlock(x, y, z);
+                                BlockState state = block.toImmutableState();
+                                Integer index = paletteIndex.get(state);
+                                if (index == null) {
+                                    index = palette.size();
+                                    paletteIndex.put(state, index);
+                                    palette.add(state);
+                                }
+                                values[count++] = index;
+                                if (block.getNbtReference() != null) {
+                                    entityIndices.add(linearIndex(x, y, z, sizeX, sizeZ));
+                                    entities.add(block);
+                                }
+                            }
+                        }
+                    }
+
+                    // Build the section's local palette
+                    int localSize = 0;
+                    int[] local = new int[16];
+                    if (localIndex.length < palette.size()) {
+                        localIndex = Arrays.copyOf(localIndex, Math.max(palette.size(), localIndex.length * 2));
+                    }
+                    Arrays.fill(localIndex, 0, palette.size(), -1);
+                    for (int i = 0; i < count; i++) {
+                        int value = values[i];
+                        if (localIndex[value] == -1) {
+                            if (localSize == local.length) {
+                                local = Arrays.copyOf(local, localSize * 2);
+                            }
+                            localIndex[value] = localSize;
+                            local[localSize++] = value;
+                        }
+                    }
+                    if (localSize == 1) {
+                        sink.accept(section, Arrays.copyOf(local, 1), null, 0); // Uniform, no index data needed
+                        continue;
+                    }
+                    int bits = bitsFor(localSize);
+                    int perLong = 64 / bits;
+                    long[] data = new long[(count + perLong - 1) / perLong];
+                    for (int i = 0; i < count; i++) {
+                        data[i / perLong] |= (long) localIndex[values[i]] << ((i % perLong) * bits);
+                    }
+                    sink.accept(section, Arrays.copyOf(local, localSize), data, bits);
+                }
+            }
+        }
+
+        int[] blockEntityIndices = new int[entityIndices.size()];
+        for (int i = 0; i < blockEntityIndices.length; i++) {
+            blockEntityIndices[i] = entityIndices.get(i);
+        }
+        // Sections are not visited in linear index order, so sort the sparse table
+        BaseBlock[] blockEntities = entities.toArray(new BaseBlock[0]);
+        sortByIndex(blockEntityIndices, blockEntities);
+
+        return new Encoded(palette.toArray(new BlockState[0]), blockEntityIndices, blockEntities);
+    }
+
+    /**
+     * Decode the block at a position relative to the arena's minimum corner
+     */
+    public BaseBlock getBlock(int x, int y, int z) {
+        if (blockEntityIndices.length > 0) {
+            int entity = Arrays.binarySearch(blockEntityIndices, linearIndex(x, y, z, sizeX, sizeZ));
+            if (entity >= 0) {
+                return blockEntities[entity];
+            }
+        }
+
+        int sx = (x + offsetX) >> 4, sy = (y + offsetY) >> 4, sz = (z + offsetZ) >> 4;
+        int section = sectionIndex(sx, sy, sz, sectionsY, sectionsZ);
+        if (mapped != null) {
+            return palette[getMappedIndex(section, sx, sy, sz, x, y, z)].toBaseBlock();
+        }
+        int[] local = sectionPalettes[section];
+        long[] data = sectionData[section];
+        if (data == null) {
+            return palette[local[0]].toBaseBlock();
+        }
+
+        int i = sectionBlockIndex(sx, sy, sz, x, y, z);
+        int bits = sectionBits[section];
+        int perLong = 64 / bits;
+        int value = (int) ((data[i / perLong] >>> ((i % perLong) * bits)) & ((1L << bits) - 1));
+        return palette[local[value]].toBaseBlock();
+    }
+
+    /**
+     * Arena palette index of a block, read from a section record in the mapping
+     */
+    private int getMappedIndex(int section, int sx, int sy, int sz, int x, int y, int z) {
+        int offset = sectionOffsets[section];
+        int localSize = mapped.getInt(offset);
+        int bits = mapped.get(offset + 4);
+        int localStart = offset + 5;
+        if (bits == 0) {
+            return mapped.getInt(localStart);
+        }
+
+        int i = sectionBlockIndex(sx, sy, sz, x, y, z);
+        int perLong = 64 / bits;
+        long word = mapped.getLong(localStart + localSize * Integer.BYTES + (i / perLong) * Long.BYTES);
+        int value = (int) ((word >>> ((i % perLong) * bits)) & ((1L << bits) - 1));
+        return mapped.getInt(localStart + value * Integer.BYTES);
+    }
+
+    /**
+     * Index of a block within its section record: x, then z, then y innermost, like a reset walks it
+     */
+    private int sectionBlockIndex(int sx, int sy, int sz, int x, int y, int z) {
+        int lx = x - sectionStart(sx, offsetX);
+        int ly = y - sectionStart(sy, offsetY);
+        int lz = z - sectionStart(sz, offsetZ);
+        return (lx * sectionLength(sz, offsetZ, sizeZ) + lz) * sectionLength(sy, offsetY, sizeY) + ly;
+    }
+
+    private static BlockState parseState(String state) {
+        return BukkitAdapter.adapt(Bukkit.createBlockData(state));
+    }
+
+    /**
+     * Where the minimum corner sits within its world section, along x (0-15), always 0 for heap snapshots
+     */
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    public int getOffsetZ() {
+        return offsetZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int getPaletteSize() {
+        return palette.length;
+    }
+
+    public int getBlockEntityCount() {
+        return blockEntities.length;
+    }
+
+    /**
+     * SHA-256 of the snapshot's blocks, equal for arenas with identical content (and, for section
+     * files, the same offset within a chunk section)
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public long getVolume() {
+        return (long) sizeX * sizeY * sizeZ;
+    }
+
+    /**
+     * Rough heap footprint of this snapshot in bytes (array payloads and headers,
+     * not counting the shared block state objects themselves)
+     */
+    public long estimateMemory() {
+        long bytes = 16L + palette.length * 8L;                  // Palette references
+        if (mapped != null) {
+            // Sections live in the mapped file, only their offsets are on the heap
+            return bytes + 16L + sectionOffsets.length * 4L + 2 * 16L + blockEntities.length * (4L + 8L);
+        }
+        bytes += 3 * 16L + sectionPalettes.length * (8L + 8L + 1L); // Section tables
+        for (int i = 0; i < sectionPalettes.length; i++) {
+            bytes += 16L + sectionPalettes[i].length * 4L;
+            if (sectionData[i] != null) {
+                bytes += 16L + sectionData[i].length * 8L;
+            }
+        }
+        bytes += 2 * 16L + blockEntities.length * (4L + 8L);
+        return bytes;
+    }
+
+    /**
+     * Whether the sections are read from a memory-mapped file rather than held on the heap
+     */
+    public boolean isDiskBacked() {
+        return mapped != null;
+    }
+
+    /**
+     * Size of the mapped file, 0 for heap snapshots
+     */
+    public long getDiskSize() {
+        return mapped == null ? 0 : mapped.capacity();
+    }
+
+    /**
+     * Rough heap footprint of the same blocks held in a WorldEdit BlockArrayClipboard
+     * (one block reference per position), for comparison
+     */
+    public long estimateClipboardMemory() {
+        return 16L + getVolume() * 8L;
+    }
+
+    private String computeHash() {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        buffer.putInt(sizeX).putInt(sizeY).putInt(sizeZ).putInt(palette.length);
+        for (BlockState state : palette) {
+            flush(digest, buffer);
+            digest.update(state.getAsString().getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < sectionPalettes.length; i++) {
+            putInt(digest, buffer, sectionPalettes[i].length);
+            for (int value : sectionPalettes[i]) {
+                putInt(digest, buffer, value);
+            }
+            if (sectionData[i] != null) {
+                for (long value : sectionData[i]) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush(digest, buffer);
+                    }
+                    buffer.putLong(value);
+                }
+            }
+        }
+        for (int i = 0; i < blockEntities.length; i++) {
+            putInt(digest, buffer, blockEntityIndices[i]);
+            flush(digest, buffer);
+            digest.update(String.valueOf(blockEntities[i].getNbt()).getBytes(StandardCharsets.UTF_8));
+        }
+        flush(digest, buffer);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void putInt(MessageDigest digest, ByteBuffer buffer, int value) {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush(digest, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void flush(MessageDigest digest, ByteBuffer buffer) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Number of world sections an axis of the arena touches
+     */
+    private static int sectionCount(int offset, int size) {
+        return (offset + size + SECTION_SIZE - 1) / SECTION_SIZE;
+    }
+
+    /**
+     * First arena-relative coordinate of a section along an axis
+     */
+    private static int sectionStart(int section, int offset) {
+        return Math.max(0, section * SECTION_SIZE - offset);
+    }
+
+    /**
+     * Number of arena blocks in a section along an axis, less than 16 at the arena's edges
+     */
+    private static int sectionLength(int section, int offset, int size) {
+        return Math.min(size, (section + 1) * SECTION_SIZE - offset) - sectionStart(section, offset);
+    }
+
+    private static int sectionIndex(int sx, int sy, int sz, int sectionsY, int sectionsZ) {
+        return (sx * sectionsZ + sz) * sectionsY + sy;
+    }
+
+    private static int linearIndex(int x, int y, int z, int sizeX, int sizeZ) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    private static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    private static void sortByIndex(int[] indices, BaseBlock[] blocks) {
+        Integer[] order = new Integer[indices.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(indices[a], indices[b]));
+        int[] sortedIndices = new int[indices.length];
+        BaseBlock[] sortedBlocks = new BaseBlock[blocks.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIndices[i] = indices[order[i]];
+            sortedBlocks[i] = blocks[order[i]];
+        }
+        System.arraycopy(sortedIndices, 0, indices, 0, indices.length);
+        System.arraycopy(sortedBlocks, 0, blocks, 0, blocks.length);
+    }
+}
@@ -0,0 +1,117 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A point-in-time copy of an arena's blocks, taken as Paper {@link ChunkSnapshot}s.
+ * Taking it only costs the main thread one snapshot per chunk plus a read of each block
+ * entity (their NBT is not part of a chunk snapshot); the blocks themselves are read out
+ * on a worker thread through {@link ArenaSnapshot.BlockSource}.
+ */
+public final class ChunkCapture implements ArenaSnapshot.BlockSource {
+
+    private final int minX, minY, minZ;
+    private final int minChunkX, minChunkZ, chunksZ;
+    private final ChunkSnapshot[] chunks;          // By (chunkX - minChunkX) * chunksZ + (chunkZ - minChunkZ)
+    private final Map<BlockVector3, BaseBlock> blockEntities; // Relative position -> block with NBT
+    private final Map<BlockData, BlockState> states; // Converted states, only touched by the reading thread
+
+    private ChunkCapture(Arena arena, ChunkSnapshot[] chunks, Map<BlockVector3, BaseBlock> blockEntities) {
+        this.minX = arena.getMinX();
+        this.minY = arena.getMinY();
+        this.minZ = arena.getMinZ();
+        this.minChunkX = minX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.chunksZ = (arena.getMaxZ() >> 4) - minChunkZ + 1;
+        this.chunks = chunks;
+        this.blockEntities = blockEntities;
+        this.states = new HashMap<>();
+    }
+
+    /**
+     * Load the arena's chunks and snapshot them all in the same tick. Must be called on the main thread.
+     * The arena's journal is cleared when the snapshots are taken, since later changes are relative to them.
+     * Chunks are held through the shared tickets, so arenas leased in the same chunks keep theirs.
+     */
+    public static CompletableFuture<ChunkCapture> take(Arena arena, ChunkTickets tickets) {
+        World world = arena.getWorld();
+        int minChunkX = arena.getMinX() >> 4, maxChunkX = arena.getMaxX() >> 4;
+        int minChunkZ = arena.getMinZ() >> 4, maxChunkZ = arena.getMaxZ() >> 4;
+
+        List<CompletableFuture<Chunk>> loads = new ArrayList<>();
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                // Ticket each chunk so none unloads before the last one is ready
+                loads.add(world.getChunkAtAsync(chunkX, chunkZ).thenApply(chunk -> {
+                    tickets.acquire(chunk);
+                    return chunk;
+                }));
+            }
+        }
+
+        // Chunk futures complete on the main thread, so this runs there once every chunk is loaded
+        // allOf waits for every load, so the tickets taken so far are released even if one failed
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+            try {
+                if (error != null) {
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                }
+                return snapshot(arena, world, loads);
+            } finally {
+                for (CompletableFuture<Chunk> load : loads) {
+                    if (!load.isCompletedExceptionally()) {
+                        tickets.release(world, load.join().getChunkKey());
+                    }
+                }
+            }
+        });
+    }
+
+    private static ChunkCapture snapshot(Arena arena, World world, List<CompletableFuture<Chunk>> loads) {
+        ChunkSnapshot[] chunks = new ChunkSnapshot[loads.size()];
+        Map<BlockVector3, BaseBlock> blockEntities = new HashMap<>();
+        com.sk89q.worldedit.world.World weWorld = BukkitAdapter.adapt(world);
+        for (int i = 0; i < chunks.length; i++) {
+            Chunk chunk = loads.get(i).join();
+            chunks[i] = chunk.getChunkSnapshot(false, false, false);
+            for (org.bukkit.block.BlockState tile : chunk.getTileEntities()) {
+                if (arena.containsBlock(tile.getX(), tile.getY(), tile.getZ())) {
+                    BlockVector3 position = BlockVector3.at(tile.getX(), tile.getY(), tile.getZ());
+                    blockEntities.put(position.subtract(arena.getMinX(), arena.getMinY(), arena.getMinZ()),
+                            weWorld.getFullBlock(position));
+                }
+            }
+        }
+        arena.getJournal().clear();
+        return new ChunkCapture(arena, chunks, blockEntities);
+    }
+
+    @Override
+    public BaseBlock getBlock(int x, int y, int z) {
+        if (!blockEntities.isEmpty()) {
+            BaseBlock block = blockEntities.get(BlockVector3.at(x, y, z));
+            if (block != null) {
+                return block;
+            }
+        }
+        int worldX = minX + x, worldZ = minZ + z;
+        ChunkSnapshot chunk = chunks[((worldX >> 4) - minChunkX) * chunksZ + ((worldZ >> 4) - minChunkZ)];
+        BlockData data = chunk.getBlockData(worldX & 15, minY + y, worldZ & 15);
+        return states.computeIfAbsent(data, BukkitAdapter::adapt).toBaseBlock();
+    }
+}
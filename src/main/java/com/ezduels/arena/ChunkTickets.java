@@ -0,0 +1,67 @@
+package com.ezduels.arena;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reference counts for the plugin's chunk tickets. Bukkit keeps one ticket per plugin and chunk,
+ * so arenas sharing a chunk (and snapshot captures) each take a reference here instead, and the
+ * ticket is only added by the first and removed by the last. Main thread only.
+ */
+public class ChunkTickets {
+
+    private final Plugin plugin;
+    private final Map<UUID, Map<Long, Integer>> counts; // World -> chunk key -> references
+
+    public ChunkTickets(Plugin plugin) {
+        this.plugin = plugin;
+        this.counts = new HashMap<>();
+    }
+
+    /**
+     * Take a reference on a loaded chunk, adding the plugin ticket if it is the first
+     */
+    public void acquire(Chunk chunk) {
+        int references = counts.computeIfAbsent(chunk.getWorld().getUID(), world -> new HashMap<>())
+                .merge(chunk.getChunkKey(), 1, Integer::sum);
+        if (references == 1) {
+            chunk.addPluginChunkTicket(plugin);
+        }
+    }
+
+    /**
+     * Drop a reference, removing the plugin ticket once nothing holds the chunk any more
+     */
+    public void release(World world, long chunkKey) {
+        Map<Long, Integer> worldCounts = counts.get(world.getUID());
+        if (worldCounts == null) {
+            return;
+        }
+        Integer references = worldCounts.get(chunkKey);
+        if (references == null) {
+            return;
+        }
+        if (references > 1) {
+            worldCounts.put(chunkKey, references - 1);
+            return;
+        }
+        worldCounts.remove(chunkKey);
+        if (worldCounts.isEmpty()) {
+            counts.remove(world.getUID());
+        }
+        world.removePluginChunkTicket((int) chunkKey, (int) (chunkKey >> 32), plugin);
+    }
+
+    /**
+     * Number of references held on a chunk
+     */
+    public int getReferences(World world, long chunkKey) {
+        Map<Long, Integer> worldCounts = counts.get(world.getUID());
+        return worldCounts == null ? 0 : worldCounts.getOrDefault(chunkKey, 0);
+    }
+}
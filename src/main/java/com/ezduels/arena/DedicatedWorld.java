@@ -0,0 +1,64 @@
+package com.ezduels.arena;
+
+import com.ezduels.EzDuelsPlugin;
+import org.bukkit.Difficulty;
+import org.bukkit.GameRule;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+
+/**
+ * Creates and configures the void world arenas are built and copied into
+ * (arenas.dedicated-world). Keeping arenas there means only empty chunks are generated
+ * around them, and their chunks tick apart from the main world.
+ */
+public final class DedicatedWorld {
+
+    private DedicatedWorld() {
+    }
+
+    /**
+     * Load the dedicated arena world, creating it on first use
+     * @return the world, or null if no dedicated world is configured or it could not be created
+     */
+    public static World ensureLoaded(EzDuelsPlugin plugin) {
+        String worldName = plugin.getSettings().arenas().dedicatedWorld();
+        if (worldName == null || worldName.isBlank()) {
+            return null;
+        }
+
+        World world = plugin.getServer().getWorld(worldName);
+        if (world == null) {
+            // Loads the world if it exists on disk, generates it otherwise
+            world = new WorldCreator(worldName)
+                    .environment(World.Environment.NORMAL)
+                    .generator(new VoidChunkGenerator())
+                    .generateStructures(false)
+                    .createWorld();
+            if (world == null) {
+                plugin.getLogger().severe("Failed to create the dedicated arena world '" + worldName + "'");
+                return null;
+            }
+            plugin.getLogger().info("Loaded dedicated arena world '" + worldName + "'");
+        }
+        configure(world);
+        return world;
+    }
+
+    /**
+     * Turn off everything that would tick or change the world between duels
+     */
+    private static void configure(World world) {
+        world.setGameRule(GameRule.DO_DAYLIGHT_CYCLE, false);
+        world.setGameRule(GameRule.DO_WEATHER_CYCLE, false);
+        world.setGameRule(GameRule.DO_MOB_SPAWNING, false);
+        world.setGameRule(GameRule.DO_PATROL_SPAWNING, false);
+        world.setGameRule(GameRule.DO_TRADER_SPAWNING, false);
+        world.setGameRule(GameRule.DO_WARDEN_SPAWNING, false);
+        world.setGameRule(GameRule.DO_INSOMNIA, false);
+        world.setGameRule(GameRule.SPAWN_CHUNK_RADIUS, 0);
+        world.setTime(6000);
+        world.setStorm(false);
+        world.setThundering(false);
+        world.setDifficulty(Difficulty.NORMAL);
+    }
+}
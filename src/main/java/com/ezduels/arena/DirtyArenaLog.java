@@ -0,0 +1,140 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record of arenas that may differ from their snapshot.
+ * A line is appended and flushed when an arena is leased ("+name") and once it has been
+ * reset and released ("-name"), so after a crash or a stop mid-duel the arenas that were
+ * never cleaned can be found by replaying the file. The file is compacted on load and
+ * whenever it has grown well past the number of dirty arenas.
+ */
+public class DirtyArenaLog {
+
+    private static final int COMPACT_THRESHOLD = 4096; // Lines written before the log is rewritten
+
+    private final File file;
+    private final Logger logger;
+    private final Set<String> dirty;
+    private BufferedWriter writer;
+    private int linesWritten;
+
+    public DirtyArenaLog(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+        this.dirty = new HashSet<>();
+    }
+
+    /**
+     * Replay the log and start appending to it
+     * @return names of the arenas left dirty by the previous run
+     */
+    public Set<String> load() {
+        dirty.clear();
+        if (file.exists()) {
+            try {
+                List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                for (String line : lines) {
+                    if (line.length() < 2) {
+                        continue; // Torn final line from a crash
+                    }
+                    if (line.charAt(0) == '+') {
+                        dirty.add(line.substring(1));
+                    } else if (line.charAt(0) == '-') {
+                        dirty.remove(line.substring(1));
+                    }
+                }
+            } catch (IOException e) {
+                logger.severe("Failed to read " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        compact();
+        return new HashSet<>(dirty);
+    }
+
+    /**
+     * Record that an arena is about to be changed
+     */
+    public void markDirty(Arena arena) {
+        if (!arena.isEphemeral() && dirty.add(arena.getName())) {
+            append('+', arena.getName());
+        }
+    }
+
+    /**
+     * Record that an arena matches its snapshot again
+     */
+    public void markClean(String arenaName) {
+        if (dirty.remove(arenaName)) {
+            append('-', arenaName);
+        }
+    }
+
+    public boolean isDirty(String arenaName) {
+        return dirty.contains(arenaName);
+    }
+
+    private void append(char action, String arenaName) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(action);
+            writer.write(arenaName);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            logger.severe("Failed to write " + file.getName() + ": " + e.getMessage());
+        }
+        if (++linesWritten >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log as just the currently dirty arenas and reopen it for appending
+     */
+    private void compact() {
+        close();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8))) {
+                for (String arenaName : dirty) {
+                    out.write('+');
+                    out.write(arenaName);
+                    out.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true));
+            linesWritten = dirty.size();
+        } catch (IOException e) {
+            logger.severe("Failed to compact " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close " + file.getName() + ": " + e.getMessage());
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ezduels.arena;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.entity.Vehicle;
+
+/**
+ * Kinds of entities capped separately inside a leased arena
+ */
+public enum EntityCategory {
+    PROJECTILE("projectiles", true),
+    ITEM("items", true),
+    VEHICLE("vehicles", false),
+    MOB("mobs", false),
+    OTHER("other", false);
+
+    private final String configKey;
+    private final boolean evictable;
+
+    EntityCategory(String configKey, boolean evictable) {
+        this.configKey = configKey;
+        this.evictable = evictable;
+    }
+
+    /**
+     * Key of this category's cap under arenas.entity-caps
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    /**
+     * Whether the oldest entities are despawned to make room, rather than refusing new ones
+     */
+    public boolean isEvictable() {
+        return evictable;
+    }
+
+    /**
+     * Categorise an entity, or null for players which are never capped
+     */
+    public static EntityCategory of(Entity entity) {
+        if (entity instanceof Player) {
+            return null;
+        }
+        if (entity instanceof Projectile) {
+            return PROJECTILE;
+        }
+        if (entity instanceof Item || entity instanceof ExperienceOrb) {
+            return ITEM;
+        }
+        // Checked before mobs, since horses and the like are both
+        if (entity instanceof Vehicle && !(entity instanceof LivingEntity)) {
+            return VEHICLE;
+        }
+        if (entity instanceof LivingEntity) {
+            return MOB;
+        }
+        return OTHER;
+    }
+}
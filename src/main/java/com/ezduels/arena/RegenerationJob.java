@@ -0,0 +1,142 @@
+package com.ezduels.arena;
+
+import com.ezduels.model.Arena;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEditException;
+
+/**
+ * A pending arena reset, split into small batches that the {@link RegenerationScheduler}
+ * can spread over several ticks, checking its time budget after each one.
+ * A full reset walks the chunk sections (16x16x16) overlapping the arena one x slice
+ * (16x16 blocks) at a time, a journal reset takes runs of as many changed blocks.
+ * Clearing an arena (to retire it) walks the same slices, writing air.
+ */
+public class RegenerationJob {
+
+    public static final int BATCH_SIZE = 16 * 16;
+
+    private final Arena arena;
+    private final long[] positions; // Packed changed positions, null for a full reset
+    private final int[] sections;   // Section origins as x,y,z triples, null for a journal reset
+    private final int minX;         // Bounds of the slices walked by a full reset or clear
+    private final int maxX;
+    private final boolean clear;    // Write air instead of the snapshot
+    private final Runnable onComplete;
+    private final long submittedAt;
+    private int cursor;
+    private int slice;              // Next x slice within the current section
+
+    private RegenerationJob(Arena arena, long[] positions, int[] sections, int minX, int maxX, boolean clear,
+                            Runnable onComplete) {
+        this.arena = arena;
+        this.positions = positions;
+        this.sections = sections;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.clear = clear;
+        this.onComplete = onComplete;
+        this.submittedAt = System.nanoTime();
+        this.cursor = 0;
+    }
+
+    /**
+     * Create a job restoring only the given packed block positions
+     */
+    public static RegenerationJob partial(Arena arena, long[] positions, Runnable onComplete) {
+        return new RegenerationJob(arena, positions, null, 0, 0, false, onComplete);
+    }
+
+    /**
+     * Create a job restoring every block between the given (inclusive) bounds
+     */
+    public static RegenerationJob full(Arena arena, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                       Runnable onComplete) {
+        return new RegenerationJob(arena, null, sections(minX, minY, minZ, maxX, maxY, maxZ), minX, maxX, false, onComplete);
+    }
+
+    /**
+     * Create a job setting every block between the given (inclusive) bounds to air
+     */
+    public static RegenerationJob clear(Arena arena, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                        Runnable onComplete) {
+        return new RegenerationJob(arena, null, sections(minX, minY, minZ, maxX, maxY, maxZ), minX, maxX, true, onComplete);
+    }
+
+    private static int[] sections(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int countX = (maxX >> 4) - (minX >> 4) + 1;
+        int countY = (maxY >> 4) - (minY >> 4) + 1;
+        int countZ = (maxZ >> 4) - (minZ >> 4) + 1;
+        int[] sections = new int[countX * countY * countZ * 3];
+        int i = 0;
+        // Walk sections x/z-major so consecutive batches stay in the same chunk
+        for (int sx = minX >> 4; sx <= maxX >> 4; sx++) {
+            for (int sz = minZ >> 4; sz <= maxZ >> 4; sz++) {
+                for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+                    sections[i++] = sx << 4;
+                    sections[i++] = sy << 4;
+                    sections[i++] = sz << 4;
+                }
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Restore the next batch of blocks. The job moves past the batch even if writing it fails.
+     * @return number of blocks written
+     */
+    public int runNextBatch(EditSession editSession) throws WorldEditException {
+        if (positions != null) {
+            int start = cursor;
+            cursor = Math.min(cursor + BATCH_SIZE, positions.length);
+            return arena.restoreBlocks(editSession, positions, start, cursor);
+        }
+
+        int sectionX = sections[cursor];
+        int y = sections[cursor + 1];
+        int z = sections[cursor + 2];
+        // Only the slices of the section inside the arena
+        int x = Math.max(sectionX + slice, minX);
+        int lastX = Math.min(sectionX + 15, maxX);
+        if (x >= lastX) {
+            cursor += 3;
+            slice = 0;
+        } else {
+            slice = x - sectionX + 1;
+        }
+        if (clear) {
+            return arena.clearSection(editSession, x, y, z, x, y + 15, z + 15);
+        }
+        return arena.restoreSection(editSession, x, y, z, x, y + 15, z + 15);
+    }
+
+    public boolean isDone() {
+        return cursor >= (positions != null ? positions.length : sections.length);
+    }
+
+    /**
+     * Number of batches that have not run yet (at most, sections at the arena's edges have fewer slices)
+     */
+    public int getRemainingBatches() {
+        if (positions != null) {
+            return (positions.length - cursor + BATCH_SIZE - 1) / BATCH_SIZE;
+        }
+        return (sections.length - cursor) / 3 * 16 - slice;
+    }
+
+    public boolean isFullReset() {
+        return positions == null;
+    }
+
+    public Arena getArena() {
+        return arena;
+    }
+
+    public Runnable getOnComplete() {
+        return onComplete;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ezduels.arena;
+
+import com.ezduels.EzDuelsPlugin;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Runs arena resets on the main thread in small batches, spending at most a
+ * configurable amount of time per tick so several duels ending together do not
+ * stall the server. The budget is checked after every batch of at most
+ * {@value RegenerationJob#BATCH_SIZE} blocks, and each job writes through one
+ * EditSession per tick.
+ */
+public class RegenerationScheduler {
+
+    private final EzDuelsPlugin plugin;
+    private final Deque<RegenerationJob> queue;
+    private BukkitTask task;
+
+    // Tuning statistics
+    private long blocksRestored;
+    private long nanosSpent;
+    private long jobsCompleted;
+    private long lastJobMillis;
+
+    public RegenerationScheduler(EzDuelsPlugin plugin) {
+        this.plugin = plugin;
+        this.queue = new ArrayDeque<>();
+    }
+
+    /**
+     * Queue an arena reset. The arena is marked as resetting until the job completes.
+     */
+    public void submit(RegenerationJob job) {
+        job.getArena().setResetting(true);
+        queue.add(job);
+
+        if (task == null) {
+            task = new BukkitRunnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            }.runTaskTimer(plugin, 1L, 1L);
+        }
+    }
+
+    /**
+     * Work through queued batches until this tick's budget is spent
+     */
+    private void tick() {
+        long budget = (long) (plugin.getSettings().arenas().regeneration().tickBudgetMs() * 1_000_000L);
+        long deadline = System.nanoTime() + budget;
+
+        while (!queue.isEmpty() && System.nanoTime() - deadline < 0) {
+            RegenerationJob job = queue.peek();
+            if (!job.isDone()) {
+                runBatches(job, deadline);
+            }
+            if (job.isDone()) {
+                queue.poll();
+                complete(job);
+            }
+        }
+
+        // Finish any job whose last batch ran this tick straight away
+        while (!queue.isEmpty() && queue.peek().isDone()) {
+            complete(queue.poll());
+        }
+
+        if (queue.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Run a job's batches through one EditSession until it is done or the deadline passes
+     * (compared like System.nanoTime values)
+     */
+    private void runBatches(RegenerationJob job, long deadline) {
+        long start = System.nanoTime();
+        com.sk89q.worldedit.world.World weWorld = BukkitAdapter.adapt(job.getArena().getWorld());
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
+            do {
+                try {
+                    blocksRestored += job.runNextBatch(editSession);
+                } catch (WorldEditException e) {
+                    plugin.getLogger().severe("Failed to regenerate part of arena " + job.getArena().getName() + ": " + e.getMessage());
+                }
+            } while (!job.isDone() && System.nanoTime() - deadline < 0);
+        }
+        nanosSpent += System.nanoTime() - start;
+    }
+
+    private void complete(RegenerationJob job) {
+        job.getArena().setResetting(false);
+        jobsCompleted++;
+        lastJobMillis = (System.nanoTime() - job.getSubmittedAt()) / 1_000_000L;
+        if (job.getOnComplete() != null) {
+            job.getOnComplete().run();
+        }
+    }
+
+    /**
+     * Finish every queued reset synchronously (for plugin shutdown)
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        while (!queue.isEmpty()) {
+            RegenerationJob job = queue.peek();
+            while (!job.isDone()) {
+                runBatches(job, System.nanoTime() + Long.MAX_VALUE / 2);
+            }
+            complete(queue.poll());
+        }
+    }
+
+    /**
+     * Number of resets waiting or in progress
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Number of batches left across all queued resets
+     */
+    public int getPendingBatches() {
+        int batches = 0;
+        for (RegenerationJob job : queue) {
+            batches += job.getRemainingBatches();
+        }
+        return batches;
+    }
+
+    /**
+     * Average main-thread time spent per restored block, in nanoseconds
+     */
+    public double getNanosPerBlock() {
+        return blocksRestored == 0 ? 0 : (double) nanosSpent / blocksRestored;
+    }
+
+    public long getBlocksRestored() {
+        return blocksRestored;
+    }
+
+    public long getJobsCompleted() {
+        return jobsCompleted;
+    }
+
+    /**
+     * Wall-clock time from submission to completion of the most recent reset
+     */
+    public long getLastJobMillis() {
+        return lastJobMillis;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ezduels.arena;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed pool of arena snapshots.
+ * Arenas of a group are usually copies of one build, so snapshots with the same
+ * content hash are shared instead of being kept once per arena. Entries are reference
+ * counted and dropped once no arena uses them anymore.
+ */
+public class SnapshotStore {
+
+    private final Map<String, Entry> snapshots;
+
+    public SnapshotStore() {
+        this.snapshots = new HashMap<>();
+    }
+
+    /**
+     * Get the shared instance for a snapshot's content, registering it if it is new
+     */
+    public synchronized ArenaSnapshot intern(ArenaSnapshot snapshot) {
+        Entry entry = snapshots.computeIfAbsent(snapshot.getContentHash(), hash -> new Entry(snapshot));
+        entry.references++;
+        return entry.snapshot;
+    }
+
+    /**
+     * Drop one reference to a snapshot previously returned by {@link #intern}
+     */
+    public synchronized void release(ArenaSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        Entry entry = snapshots.get(snapshot.getContentHash());
+        if (entry != null && --entry.references <= 0) {
+            snapshots.remove(snapshot.getContentHash());
+        }
+    }
+
+    /**
+     * Number of arenas sharing a snapshot
+     */
+    public synchronized int getReferences(ArenaSnapshot snapshot) {
+        Entry entry = snapshots.get(snapshot.getContentHash());
+        return entry == null ? 0 : entry.references;
+    }
+
+    /**
+     * Number of distinct snapshots held
+     */
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * Estimated memory of the distinct snapshots actually held
+     */
+    public synchronized long getSharedMemory() {
+        long bytes = 0;
+        for (Entry entry : snapshots.values()) {
+            bytes += entry.snapshot.estimateMemory();
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimated memory if every arena held its own copy of its snapshot
+     */
+    public synchronized long getUnsharedMemory() {
+        long bytes = 0;
+        for (Entry entry : snapshots.values()) {
+            bytes += entry.snapshot.estimateMemory() * entry.references;
+        }
+        return bytes;
+    }
+
+    private static final class Entry {
+        private final ArenaSnapshot snapshot;
+        private int references;
+
+        private Entry(ArenaSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ezduels.arena;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.generator.BiomeProvider;
+import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.generator.WorldInfo;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates empty chunks for the dedicated arena world: no terrain, caves, decorations,
+ * structures or mobs, and a single void biome. A lone bedrock block marks the spawn so
+ * admins have something to stand on while building arenas.
+ */
+public class VoidChunkGenerator extends ChunkGenerator {
+
+    private static final int SPAWN_Y = 64;
+
+    @Override
+    public void generateNoise(WorldInfo worldInfo, Random random, int chunkX, int chunkZ, ChunkData chunkData) {
+        if (chunkX == 0 && chunkZ == 0 && SPAWN_Y - 1 >= chunkData.getMinHeight()) {
+            chunkData.setBlock(0, SPAWN_Y - 1, 0, Material.BEDROCK);
+        }
+    }
+
+    @Override
+    public BiomeProvider getDefaultBiomeProvider(WorldInfo worldInfo) {
+        return new BiomeProvider() {
+            @Override
+            public Biome getBiome(WorldInfo worldInfo, int x, int y, int z) {
+                return Biome.THE_VOID;
+            }
+
+            @Override
+            public List<Biome> getBiomes(WorldInfo worldInfo) {
+                return List.of(Biome.THE_VOID);
+            }
+        };
+    }
+
+    @Override
+    public Location getFixedSpawnLocation(World world, Random random) {
+        return new Location(world, 0.5, SPAWN_Y, 0.5);
+    }
+
+    @Override
+    public boolean shouldGenerateNoise() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateSurface() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateCaves() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateDecorations() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateMobs() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateStructures() {
+        return false;
+    }
+}
@@ -1,14 +1,28 @@
 package com.ezduels.commands;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.arena.ArenaPool;
+import com.ezduels.arena.ArenaSnapshot;
+import com.ezduels.arena.DedicatedWorld;
+import com.ezduels.arena.RegenerationScheduler;
+import com.ezduels.arena.SnapshotStore;
 import com.ezduels.model.Arena;
+import com.ezduels.model.Duel;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Admin command for managing duels and arenas
  */
@@ -35,6 +49,8 @@ public class DuelsAdminCommand implements CommandExecutor {
         switch (args[0].toLowerCase()) {
             case "arena":
                 return handleArenaCommand(player, args);
+            case "duels":
+                return handleDuelsCommand(player);
             case "reload":
                 return handleReloadCommand(player);
             default:
@@ -48,7 +64,7 @@ public class DuelsAdminCommand implements CommandExecutor {
      */
     private boolean handleArenaCommand(Player player, String[] args) {
         if (args.length < 2) {
-            player.sendMessage(Component.text("Usage: /duelsadmin arena <create|define|spawnloc|list>").color(NamedTextColor.RED));
+            player.sendMessage(Component.text("Usage: /duelsadmin arena <create|define|spawnloc|list|recapture|resetstats|world>").color(NamedTextColor.RED));
             return true;
         }
         
@@ -61,8 +77,14 @@ public class DuelsAdminCommand implements CommandExecutor {
                 return handleArenaSpawnLoc(player, args);
             case "list":
                 return handleArenaList(player);
+            case "recapture":
+                return handleArenaRecapture(player, args);
+            case "resetstats":
+                return handleArenaResetStats(player);
+            case "world":
+                return handleArenaWorld(player);
             default:
-                player.sendMessage(Component.text("Usage: /duelsadmin arena <create|define|spawnloc|list>").color(NamedTextColor.RED));
+                player.sendMessage(Component.text("Usage: /duelsadmin arena <create|define|spawnloc|list|recapture|resetstats|world>").color(NamedTextColor.RED));
                 return true;
         }
     }
@@ -109,8 +131,8 @@ public class DuelsAdminCommand implements CommandExecutor {
         
         player.sendMessage(Component.text("Arena '" + arena.getName() + "' created! Now set spawn locations with /duelsadmin arena spawnloc 1 and /duelsadmin arena spawnloc 2").color(NamedTextColor.GREEN));
         
-        // Save arenas
-        plugin.getArenaManager().saveArenas();
+        // Save the new arena
+        plugin.getArenaManager().saveArena(arena);
         
         return true;
     }
@@ -135,19 +157,10 @@ public class DuelsAdminCommand implements CommandExecutor {
             return true;
         }
         
-        // Find the most recent arena created in this world
-        Arena targetArena = null;
-        for (String basename : plugin.getArenaManager().getArenaGroups()) {
-            for (Arena arena : plugin.getArenaManager().getArenas(basename)) {
-                if (arena.getWorld().equals(player.getWorld())) {
-                    if (arena.contains(player.getLocation())) {
-                        targetArena = arena;
-                        break;
-                    }
-                }
-            }
-            if (targetArena != null) break;
-        }
+        // Find the arena the player is standing in
+        Location location = player.getLocation();
+        Arena targetArena = plugin.getArenaManager().getArenaAt(location.getWorld(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
         
         if (targetArena == null) {
             player.sendMessage(Component.text("You must be standing in an arena to set spawn locations!").color(NamedTextColor.RED));
@@ -157,7 +170,7 @@ public class DuelsAdminCommand implements CommandExecutor {
         // Set spawn location
         if (plugin.getArenaManager().setSpawnLocation(targetArena, spawnNumber, player.getLocation())) {
             player.sendMessage(Component.text("Spawn location " + spawnNumber + " set for arena '" + targetArena.getName() + "'!").color(NamedTextColor.GREEN));
-            plugin.getArenaManager().saveArenas();
+            plugin.getArenaManager().saveArena(targetArena);
         } else {
             player.sendMessage(Component.text("Failed to set spawn location!").color(NamedTextColor.RED));
         }
@@ -175,11 +188,161 @@ public class DuelsAdminCommand implements CommandExecutor {
         }
         
         player.sendMessage(Component.text("Arena Groups:").color(NamedTextColor.GREEN));
+        SnapshotStore snapshotStore = plugin.getArenaManager().getSnapshotStore();
         for (String basename : plugin.getArenaManager().getArenaGroups()) {
             int count = plugin.getArenaManager().getArenas(basename).size();
-            player.sendMessage(Component.text("- " + basename + " (" + count + " arenas)").color(NamedTextColor.YELLOW));
+            ArenaPool pool = plugin.getArenaManager().getArenaPool();
+            player.sendMessage(Component.text("- " + basename + " (" + count + " arenas, " + pool.getLeasedCount(basename)
+                    + " leased, " + pool.getFreeCount(basename) + " free, "
+                    + plugin.getArenaManager().getAdmissionQueue().getQueuedCount(basename) + " queued, "
+                    + plugin.getArenaManager().getSelectionPolicy(basename).getName() + ")").color(NamedTextColor.YELLOW));
+            
+            // Snapshot memory report per arena
+            for (Arena arena : plugin.getArenaManager().getArenas(basename)) {
+                ArenaSnapshot snapshot = arena.getSnapshot();
+                if (snapshot == null) {
+                    boolean saved = plugin.getArenaManager().hasSnapshot(arena);
+                    player.sendMessage(Component.text("  - " + arena.getName() + (saved ? ": snapshot not loaded yet" : ": no snapshot"))
+                            .color(saved ? NamedTextColor.GRAY : NamedTextColor.RED));
+                    continue;
+                }
+                String disk = snapshot.isDiskBacked() ? " + " + formatBytes(snapshot.getDiskSize()) + " disk-backed" : "";
+                player.sendMessage(Component.text("  - " + arena.getName() + ": " + formatBytes(snapshot.estimateMemory()) + disk
+                        + " (clipboard ~" + formatBytes(snapshot.estimateClipboardMemory()) + ", "
+                        + snapshot.getPaletteSize() + " states, " + snapshot.getBlockEntityCount() + " block entities, "
+                        + "shared by " + snapshotStore.getReferences(snapshot) + ", " + snapshot.getContentHash().substring(0, 8) + ")")
+                        .color(NamedTextColor.GRAY));
+            }
+        }
+        player.sendMessage(Component.text("Snapshot memory: " + formatBytes(snapshotStore.getSharedMemory())
+                + " in " + snapshotStore.size() + " distinct snapshots (unshared ~"
+                + formatBytes(snapshotStore.getUnsharedMemory()) + ")").color(NamedTextColor.GREEN));
+        for (Map.Entry<String, ArenaPool.SelectionStats> entry : plugin.getArenaManager().getArenaPool().getSelectionStats().entrySet()) {
+            ArenaPool.SelectionStats stats = entry.getValue();
+            player.sendMessage(Component.text("Selection " + entry.getKey() + ": " + stats.getWarmHits() + "/"
+                    + stats.getSelections() + " arenas warm (" + (stats.getWarmHits() * 100 / Math.max(1, stats.getSelections()))
+                    + "%)").color(NamedTextColor.GREEN));
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Format a byte count for display
+     */
+    private String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+    
+    /**
+     * Handle re-capturing an arena's pristine snapshot after it was rebuilt
+     */
+    private boolean handleArenaRecapture(Player player, String[] args) {
+        if (args.length < 3) {
+            player.sendMessage(Component.text("Usage: /duelsadmin arena recapture <arena>").color(NamedTextColor.RED));
+            return true;
         }
         
+        Arena arena = plugin.getArenaManager().getArena(args[2]);
+        if (arena == null) {
+            player.sendMessage(Component.text("Arena '" + args[2] + "' does not exist!").color(NamedTextColor.RED));
+            return true;
+        }
+        
+        if (arena.isInUse() || arena.isResetting()) {
+            player.sendMessage(Component.text("Arena '" + arena.getName() + "' is in use, try again once it is free.").color(NamedTextColor.RED));
+            return true;
+        }
+        
+        player.sendMessage(Component.text("Capturing arena '" + arena.getName() + "'...").color(NamedTextColor.YELLOW));
+        plugin.getArenaManager().captureSnapshot(arena).whenComplete((captured, error) -> {
+            if (error != null) {
+                player.sendMessage(Component.text("Failed to capture arena '" + arena.getName() + "': " + error.getMessage()).color(NamedTextColor.RED));
+                return;
+            }
+            player.sendMessage(Component.text("Snapshot of arena '" + arena.getName() + "' captured!").color(NamedTextColor.GREEN));
+        });
+        
+        return true;
+    }
+    
+    /**
+     * Teleport to the dedicated arena world to build arena templates there
+     */
+    private boolean handleArenaWorld(Player player) {
+        World world = DedicatedWorld.ensureLoaded(plugin);
+        if (world == null) {
+            player.sendMessage(Component.text("No dedicated arena world is configured (arenas.dedicated-world)!").color(NamedTextColor.RED));
+            return true;
+        }
+        player.teleportAsync(world.getSpawnLocation());
+        player.sendMessage(Component.text("Teleported to the arena world '" + world.getName() + "'.").color(NamedTextColor.GREEN));
+        return true;
+    }
+    
+    /**
+     * Handle arena reset statistics, used to tune the regeneration tick budget
+     */
+    private boolean handleArenaResetStats(Player player) {
+        RegenerationScheduler scheduler = plugin.getArenaManager().getRegenerationScheduler();
+        double budget = plugin.getSettings().arenas().regeneration().tickBudgetMs();
+        
+        player.sendMessage(Component.text("Arena Reset Statistics:").color(NamedTextColor.GREEN));
+        player.sendMessage(Component.text("- Queued resets: " + scheduler.getQueueDepth()
+                + " (" + scheduler.getPendingBatches() + " batches)").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("- Completed resets: " + scheduler.getJobsCompleted()
+                + " (" + scheduler.getBlocksRestored() + " blocks)").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text(String.format("- Time per block: %.2f µs", scheduler.getNanosPerBlock() / 1000.0))
+                .color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("- Last reset took: " + scheduler.getLastJobMillis() + " ms").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("- Tick budget: " + budget + " ms").color(NamedTextColor.YELLOW));
+        
+        // Arenas leaving the most entities behind first
+        List<Arena> leaky = new ArrayList<>();
+        for (String basename : plugin.getArenaManager().getArenaGroups()) {
+            for (Arena arena : plugin.getArenaManager().getArenas(basename)) {
+                if (arena.getSweptEntities() > 0) {
+                    leaky.add(arena);
+                }
+            }
+        }
+        leaky.sort(Comparator.comparingLong(Arena::getSweptEntities).reversed());
+        player.sendMessage(Component.text("- Leftover entities removed:" + (leaky.isEmpty() ? " none" : "")).color(NamedTextColor.YELLOW));
+        for (Arena arena : leaky) {
+            player.sendMessage(Component.text("  " + arena.getName() + ": " + arena.getSweptEntities() + " over "
+                    + arena.getSweeps() + " resets (last " + arena.getLastSweptEntities() + ")").color(NamedTextColor.GRAY));
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Show how many duels are in each state and which state transitions were rejected
+     */
+    private boolean handleDuelsCommand(Player player) {
+        Map<Duel.DuelState, Integer> counts = new EnumMap<>(Duel.DuelState.class);
+        for (Duel duel : plugin.getDuelManager().getActiveDuels()) {
+            counts.merge(duel.getState(), 1, Integer::sum);
+        }
+        player.sendMessage(Component.text("Active duels:").color(NamedTextColor.GREEN));
+        if (counts.isEmpty()) {
+            player.sendMessage(Component.text("None").color(NamedTextColor.GRAY));
+        }
+        for (Map.Entry<Duel.DuelState, Integer> entry : counts.entrySet()) {
+            player.sendMessage(Component.text(entry.getKey() + ": " + entry.getValue()).color(NamedTextColor.YELLOW));
+        }
+        
+        Map<String, Long> rejected = plugin.getDuelManager().getStateMachine().getRejectedTransitions();
+        player.sendMessage(Component.text("Rejected state transitions: " + plugin.getDuelManager().getStateMachine().getRejectedCount())
+                .color(NamedTextColor.GREEN));
+        for (Map.Entry<String, Long> entry : rejected.entrySet()) {
+            player.sendMessage(Component.text(entry.getKey() + ": " + entry.getValue()).color(NamedTextColor.YELLOW));
+        }
         return true;
     }
     
@@ -187,7 +350,14 @@ public class DuelsAdminCommand implements CommandExecutor {
      * Handle reload command
      */
     private boolean handleReloadCommand(Player player) {
-        plugin.reloadConfig();
+        List<String> problems = plugin.reloadSettings();
+        if (!problems.isEmpty()) {
+            player.sendMessage(Component.text("config.yml was not reloaded, the current settings stay in use:").color(NamedTextColor.RED));
+            for (String problem : problems) {
+                player.sendMessage(Component.text("- " + problem).color(NamedTextColor.RED));
+            }
+            return true;
+        }
         player.sendMessage(Component.text("EzDuels configuration reloaded!").color(NamedTextColor.GREEN));
         return true;
     }
@@ -201,6 +371,10 @@ public class DuelsAdminCommand implements CommandExecutor {
         player.sendMessage(Component.text("/duelsadmin arena define <basename> - Define arena from WorldEdit selection").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/duelsadmin arena spawnloc <1|2> - Set spawn location for arena").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/duelsadmin arena list - List all arenas").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("/duelsadmin arena recapture <arena> - Re-capture an arena's snapshot").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("/duelsadmin arena resetstats - Show arena reset statistics").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("/duelsadmin arena world - Go to the dedicated arena world").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("/duelsadmin duels - Show duels by state and rejected state transitions").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/duelsadmin reload - Reload configuration").color(NamedTextColor.YELLOW));
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.ezduels.config;
+
+import java.util.List;
+
+/**
+ * Every configurable message, with its config key, default template and placeholders
+ */
+public enum Message {
+    DUEL_CHALLENGE("duel-challenge", "", "challenger"),
+    DUEL_DETAILS("duel-details", "", "loot", "betting", "arena"),
+    DUEL_ACCEPT("duel-accept", ""),
+    BET_REMINDER("bet-reminder", "<gray>[EzDuels] You have an active bet menu. Click here or type /betmenu to reopen."),
+    COUNTDOWN("countdown", "<yellow>{seconds}s till fight. /skip to skip</yellow>", "seconds"),
+    PRIZE_REMINDER("prize-reminder", "<gray>[EzDuels] You have unclaimed prizes. Use /prizes to view them before they expire.");
+
+    private final String key;
+    private final String defaultTemplate;
+    private final List<String> placeholders;
+
+    Message(String key, String defaultTemplate, String... placeholders) {
+        this.key = key;
+        this.defaultTemplate = defaultTemplate;
+        this.placeholders = List.of(placeholders);
+    }
+
+    /**
+     * Path of the template in config.yml
+     */
+    public String getPath() {
+        return "messages." + key;
+    }
+
+    public String getDefaultTemplate() {
+        return defaultTemplate;
+    }
+
+    /**
+     * Placeholder names, in the order their values are passed when rendering
+     */
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+}
@@ -0,0 +1,56 @@
+package com.ezduels.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.configuration.Configuration;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The configured messages, each parsed once into a {@link MessageTemplate} when the config is
+ * loaded. A reload compiles a complete new set and swaps it in at once, so a message is never
+ * rendered from a mix of old and new templates.
+ */
+public class MessageCatalog {
+
+    private final Logger logger;
+    private final MiniMessage miniMessage;
+    private volatile Map<Message, MessageTemplate> templates;
+
+    public MessageCatalog(Logger logger) {
+        this.logger = logger;
+        this.miniMessage = MiniMessage.miniMessage();
+        this.templates = Collections.emptyMap();
+    }
+
+    /**
+     * Compile every message from the config, falling back to the default of any that fail to parse
+     */
+    public void load(Configuration config) {
+        Map<Message, MessageTemplate> compiled = new EnumMap<>(Message.class);
+        for (Message message : Message.values()) {
+            String template = config.getString(message.getPath(), message.getDefaultTemplate());
+            try {
+                compiled.put(message, MessageTemplate.compile(miniMessage, template, message.getPlaceholders()));
+            } catch (RuntimeException e) {
+                logger.warning("Invalid message " + message.getPath() + ", using the default: " + e.getMessage());
+                compiled.put(message, MessageTemplate.compile(miniMessage, message.getDefaultTemplate(), message.getPlaceholders()));
+            }
+        }
+        templates = compiled;
+    }
+
+    /**
+     * Render a message, with values for its placeholders in the order the message declares them
+     */
+    public Component render(Message message, Object... values) {
+        MessageTemplate template = templates.get(message);
+        if (template == null) {
+            return Component.empty(); // Not loaded yet
+        }
+        return template.render(values);
+    }
+}
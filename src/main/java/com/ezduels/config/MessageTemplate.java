@@ -0,0 +1,142 @@
+package com.ezduels.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A MiniMessage template parsed once into a component tree with placeholder slots.
+ * Each {name} placeholder is swapped for a marker character before parsing, so it survives
+ * wherever it appears (text, hover text, click commands). Rendering then copies only the
+ * components on the path to a slot and fills in values; everything else is shared, and a
+ * template without placeholders always renders to the same component.
+ */
+public final class MessageTemplate {
+
+    private static final char SLOT_MARKER = '\uE000'; // Followed by SLOT_BASE + slot index
+    private static final char SLOT_BASE = '\uE100';
+
+    private final Component root;
+    private final int slotCount;
+    private final Set<Component> withSlots; // Components that contain a slot themselves or below them
+
+    private MessageTemplate(Component root, int slotCount, Set<Component> withSlots) {
+        this.root = root;
+        this.slotCount = slotCount;
+        this.withSlots = withSlots;
+    }
+
+    /**
+     * Parse a template whose placeholders are written as {name}
+     * @throws RuntimeException if MiniMessage cannot parse it
+     */
+    public static MessageTemplate compile(MiniMessage miniMessage, String template, List<String> placeholders) {
+        String prepared = template;
+        for (int i = 0; i < placeholders.size(); i++) {
+            prepared = prepared.replace("{" + placeholders.get(i) + "}", String.valueOf(new char[] {SLOT_MARKER, (char) (SLOT_BASE + i)}));
+        }
+        Component root = miniMessage.deserialize(prepared);
+        Set<Component> withSlots = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!placeholders.isEmpty()) {
+            markSlots(root, withSlots);
+        }
+        return new MessageTemplate(root, placeholders.size(), withSlots);
+    }
+
+    /**
+     * Fill the slots with values, given in placeholder order
+     */
+    public Component render(Object... values) {
+        if (values.length != slotCount) {
+            throw new IllegalArgumentException("Expected " + slotCount + " values, got " + values.length);
+        }
+        if (withSlots.isEmpty()) {
+            return root;
+        }
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = String.valueOf(values[i]);
+        }
+        return render(root, strings);
+    }
+
+    private Component render(Component component, String[] values) {
+        if (!withSlots.contains(component)) {
+            return component;
+        }
+        Component rendered = component;
+        if (component instanceof TextComponent text && hasSlot(text.content())) {
+            rendered = text.content(fill(text.content(), values));
+        }
+        HoverEvent<?> hover = component.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT && withSlots.contains((Component) hover.value())) {
+            rendered = rendered.hoverEvent(HoverEvent.showText(render((Component) hover.value(), values)));
+        }
+        ClickEvent click = component.clickEvent();
+        if (click != null && hasSlot(click.value())) {
+            rendered = rendered.clickEvent(ClickEvent.clickEvent(click.action(), fill(click.value(), values)));
+        }
+        List<Component> children = component.children();
+        List<Component> renderedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            if (withSlots.contains(child)) {
+                if (renderedChildren == null) {
+                    renderedChildren = new ArrayList<>(children);
+                }
+                renderedChildren.set(i, render(child, values));
+            }
+        }
+        if (renderedChildren != null) {
+            rendered = rendered.children(renderedChildren);
+        }
+        return rendered;
+    }
+
+    /**
+     * Record every component that has a slot in itself, its hover text, click value or children
+     */
+    private static boolean markSlots(Component component, Set<Component> withSlots) {
+        boolean found = component instanceof TextComponent text && hasSlot(text.content());
+        HoverEvent<?> hover = component.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            found |= markSlots((Component) hover.value(), withSlots);
+        }
+        ClickEvent click = component.clickEvent();
+        if (click != null) {
+            found |= hasSlot(click.value());
+        }
+        for (Component child : component.children()) {
+            found |= markSlots(child, withSlots);
+        }
+        if (found) {
+            withSlots.add(component);
+        }
+        return found;
+    }
+
+    private static boolean hasSlot(String text) {
+        return text.indexOf(SLOT_MARKER) >= 0;
+    }
+
+    private static String fill(String text, String[] values) {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == SLOT_MARKER && i + 1 < text.length()) {
+                builder.append(values[text.charAt(++i) - SLOT_BASE]);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.ezduels.config;
+
+import com.ezduels.arena.ArenaSelectionPolicy;
+import com.ezduels.arena.EntityCategory;
+import org.bukkit.configuration.Configuration;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * config.yml bound once into typed, immutable values. The plugin holds the current settings in
+ * one volatile reference and replaces the whole object on reload, only after it validated, so
+ * code reads plain fields and never sees a half-applied or invalid config.
+ * Times are in the units config.yml uses (mostly seconds).
+ */
+public record Settings(String prefix, Duels duels, Prizes prizes, Arenas arenas) {
+
+    public record Duels(int countdownDuration, int betMenuDuration, int betReminderInterval) {
+    }
+
+    public record Prizes(int expirationTime, int reminderInterval) {
+    }
+
+    public record Arenas(String dedicatedWorld, boolean preloadSnapshots, Regeneration regeneration,
+                         EntityCaps entityCaps, Selection selection, int queueTimeout, Elastic elastic) {
+    }
+
+    public record Regeneration(int journalLimit, double tickBudgetMs, long diskSnapshotVolume) {
+    }
+
+    /**
+     * Per-arena entity caps, negative for no cap
+     */
+    public record EntityCaps(int projectiles, int items, int vehicles, int mobs, int other) {
+
+        public int get(EntityCategory category) {
+            return switch (category) {
+                case PROJECTILE -> projectiles;
+                case ITEM -> items;
+                case VEHICLE -> vehicles;
+                case MOB -> mobs;
+                case OTHER -> other;
+            };
+        }
+    }
+
+    /**
+     * Default arena selection policy name, and policy names of groups that override it
+     */
+    public record Selection(String policy, Map<String, String> groups) {
+    }
+
+    public record Elastic(boolean enabled, int checkInterval, int spareCopies, int maxCopies, int gridSpacing,
+                          int idleRetireSeconds) {
+    }
+
+    /**
+     * Bind a config, using the default of every missing key
+     */
+    public static Settings load(Configuration config) {
+        Duels duels = new Duels(
+                config.getInt("duels.countdown-duration", 30),
+                config.getInt("duels.bet-menu-duration", 300),
+                config.getInt("duels.bet-reminder-interval", 5));
+        Prizes prizes = new Prizes(
+                config.getInt("prizes.expiration-time", 3600),
+                config.getInt("prizes.reminder-interval", 300));
+
+        Regeneration regeneration = new Regeneration(
+                config.getInt("arenas.regeneration.journal-limit", 4096),
+                config.getDouble("arenas.regeneration.tick-budget-ms", 5.0),
+                config.getLong("arenas.regeneration.disk-snapshot-volume", 1_000_000L));
+        EntityCaps entityCaps = new EntityCaps(
+                config.getInt("arenas.entity-caps." + EntityCategory.PROJECTILE.getConfigKey(), -1),
+                config.getInt("arenas.entity-caps." + EntityCategory.ITEM.getConfigKey(), -1),
+                config.getInt("arenas.entity-caps." + EntityCategory.VEHICLE.getConfigKey(), -1),
+                config.getInt("arenas.entity-caps." + EntityCategory.MOB.getConfigKey(), -1),
+                config.getInt("arenas.entity-caps." + EntityCategory.OTHER.getConfigKey(), -1));
+        Map<String, String> groupPolicies = new LinkedHashMap<>();
+        ConfigurationSection groups = config.getConfigurationSection("arenas.selection.groups");
+        if (groups != null) {
+            for (String group : groups.getKeys(false)) {
+                groupPolicies.put(group, groups.getString(group, ""));
+            }
+        }
+        Selection selection = new Selection(config.getString("arenas.selection.policy", "warm-first"), Map.copyOf(groupPolicies));
+        Elastic elastic = new Elastic(
+                config.getBoolean("arenas.elastic.enabled", false),
+                config.getInt("arenas.elastic.check-interval", 5),
+                config.getInt("arenas.elastic.spare-copies", 2),
+                config.getInt("arenas.elastic.max-copies", 20),
+                config.getInt("arenas.elastic.grid-spacing", 128),
+                config.getInt("arenas.elastic.idle-retire-seconds", 600));
+        Arenas arenas = new Arenas(
+                config.getString("arenas.dedicated-world", "duels_world"),
+                config.getBoolean("arenas.preload-snapshots", false),
+                regeneration, entityCaps, selection,
+                config.getInt("arenas.queue.timeout", 120),
+                elastic);
+
+        return new Settings(
+                config.getString("plugin.prefix", "<gray>[<color:#45bbff><b>DUELS</b></color>]</gray>"),
+                duels, prizes, arenas);
+    }
+
+    /**
+     * Values the plugin cannot run with
+     * @return one message per problem, empty if the settings can be used
+     */
+    public List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        atLeast(problems, "duels.countdown-duration", duels.countdownDuration(), 0);
+        atLeast(problems, "duels.bet-menu-duration", duels.betMenuDuration(), 1);
+        atLeast(problems, "duels.bet-reminder-interval", duels.betReminderInterval(), 1);
+        atLeast(problems, "prizes.expiration-time", prizes.expirationTime(), 1);
+        atLeast(problems, "prizes.reminder-interval", prizes.reminderInterval(), 1);
+        atLeast(problems, "arenas.regeneration.journal-limit", arenas.regeneration().journalLimit(), 0);
+        if (!(arenas.regeneration().tickBudgetMs() > 0)) {
+            problems.add("arenas.regeneration.tick-budget-ms must be above 0");
+        }
+        if (arenas.regeneration().diskSnapshotVolume() < 1) {
+            problems.add("arenas.regeneration.disk-snapshot-volume must be at least 1");
+        }
+        if (ArenaSelectionPolicy.byName(arenas.selection().policy()) == null) {
+            problems.add("arenas.selection.policy '" + arenas.selection().policy() + "' is not warm-first, lru or round-robin");
+        }
+        for (Map.Entry<String, String> group : arenas.selection().groups().entrySet()) {
+            if (ArenaSelectionPolicy.byName(group.getValue()) == null) {
+                problems.add("arenas.selection.groups." + group.getKey() + " '" + group.getValue() + "' is not warm-first, lru or round-robin");
+            }
+        }
+        atLeast(problems, "arenas.queue.timeout", arenas.queueTimeout(), 1);
+        Elastic elastic = arenas.elastic();
+        atLeast(problems, "arenas.elastic.check-interval", elastic.checkInterval(), 1);
+        atLeast(problems, "arenas.elastic.spare-copies", elastic.spareCopies(), 0);
+        atLeast(problems, "arenas.elastic.max-copies", elastic.maxCopies(), 0);
+        atLeast(problems, "arenas.elastic.grid-spacing", elastic.gridSpacing(), 1);
+        atLeast(problems, "arenas.elastic.idle-retire-seconds", elastic.idleRetireSeconds(), 0);
+        return problems;
+    }
+
+    /**
+     * A copy with every value {@link #validate()} rejects set to its default, and the valid ones kept
+     */
+    public Settings withDefaultsForInvalid() {
+        Settings defaults = load(new MemoryConfiguration());
+        Duels duels = new Duels(
+                atLeastOr(this.duels.countdownDuration(), 0, defaults.duels.countdownDuration()),
+                atLeastOr(this.duels.betMenuDuration(), 1, defaults.duels.betMenuDuration()),
+                atLeastOr(this.duels.betReminderInterval(), 1, defaults.duels.betReminderInterval()));
+        Prizes prizes = new Prizes(
+                atLeastOr(this.prizes.expirationTime(), 1, defaults.prizes.expirationTime()),
+                atLeastOr(this.prizes.reminderInterval(), 1, defaults.prizes.reminderInterval()));
+
+        Regeneration regeneration = arenas.regeneration();
+        Regeneration defaultRegeneration = defaults.arenas.regeneration();
+        regeneration = new Regeneration(
+                atLeastOr(regeneration.journalLimit(), 0, defaultRegeneration.journalLimit()),
+                regeneration.tickBudgetMs() > 0 ? regeneration.tickBudgetMs() : defaultRegeneration.tickBudgetMs(),
+                regeneration.diskSnapshotVolume() >= 1 ? regeneration.diskSnapshotVolume() : defaultRegeneration.diskSnapshotVolume());
+        Map<String, String> groupPolicies = new LinkedHashMap<>();
+        for (Map.Entry<String, String> group : arenas.selection().groups().entrySet()) {
+            if (ArenaSelectionPolicy.byName(group.getValue()) != null) {
+                groupPolicies.put(group.getKey(), group.getValue()); // Dropped groups use the default policy
+            }
+        }
+        String policy = ArenaSelectionPolicy.byName(arenas.selection().policy()) != null
+                ? arenas.selection().policy() : defaults.arenas.selection().policy();
+        Elastic elastic = arenas.elastic();
+        Elastic defaultElastic = defaults.arenas.elastic();
+        elastic = new Elastic(elastic.enabled(),
+                atLeastOr(elastic.checkInterval(), 1, defaultElastic.checkInterval()),
+                atLeastOr(elastic.spareCopies(), 0, defaultElastic.spareCopies()),
+                atLeastOr(elastic.maxCopies(), 0, defaultElastic.maxCopies()),
+                atLeastOr(elastic.gridSpacing(), 1, defaultElastic.gridSpacing()),
+                atLeastOr(elastic.idleRetireSeconds(), 0, defaultElastic.idleRetireSeconds()));
+        Arenas arenas = new Arenas(this.arenas.dedicatedWorld(), this.arenas.preloadSnapshots(),
+                regeneration, this.arenas.entityCaps(), new Selection(policy, Map.copyOf(groupPolicies)),
+                atLeastOr(this.arenas.queueTimeout(), 1, defaults.arenas.queueTimeout()),
+                elastic);
+
+        return new Settings(prefix, duels, prizes, arenas);
+    }
+
+    private static int atLeastOr(int value, int minimum, int fallback) {
+        return value < minimum ? fallback : value;
+    }
+
+    private static void atLeast(List<String> problems, String key, long value, long minimum) {
+        if (value < minimum) {
+            problems.add(key + " must be at least " + minimum + " (is " + value + ")");
+        }
+    }
+}
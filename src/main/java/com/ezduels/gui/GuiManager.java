@@ -74,7 +74,7 @@ public class GuiManager {
         // Arena selection
         ItemStack arenaItem = new ItemStack(Material.GRASS_BLOCK);
         ItemMeta arenaMeta = arenaItem.getItemMeta();
-        String arenaName = duel.getArena() != null ? duel.getArena().getBasename() : "AUTO";
+        String arenaName = duel.getArenaGroup() != null ? duel.getArenaGroup() : "AUTO";
         arenaMeta.displayName(Component.text("Arena: " + arenaName).color(NamedTextColor.YELLOW));
         List<Component> lore = new ArrayList<>();
         lore.add(Component.text("Click to cycle through available arenas").color(NamedTextColor.GRAY));
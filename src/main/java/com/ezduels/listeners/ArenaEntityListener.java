@@ -0,0 +1,126 @@
+package com.ezduels.listeners;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import com.ezduels.EzDuelsPlugin;
+import com.ezduels.arena.EntityCategory;
+import com.ezduels.model.Arena;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntitySpawnEvent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caps how many entities of each category can exist in a leased arena.
+ * Counts are kept per arena from add and remove events, and entities that wander or fly out
+ * of their arena stop counting at the next check. When a new projectile or item would go
+ * over its cap the oldest ones are despawned, other entities are refused.
+ */
+public class ArenaEntityListener implements Listener {
+
+    private static final long ESCAPE_CHECK_INTERVAL = 20L; // Ticks
+
+    private final EzDuelsPlugin plugin;
+    private final Map<UUID, Arena> trackedIn; // Arena each tracked entity is counted in
+
+    public ArenaEntityListener(EzDuelsPlugin plugin) {
+        this.plugin = plugin;
+        this.trackedIn = new HashMap<>();
+        plugin.getTimerWheel().runTimer(null, ESCAPE_CHECK_INTERVAL, ESCAPE_CHECK_INTERVAL, this::uncountEscaped);
+    }
+
+    /**
+     * Enforce the caps before an entity is added inside a leased arena
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntitySpawn(EntitySpawnEvent event) {
+        Entity entity = event.getEntity();
+        EntityCategory category = EntityCategory.of(entity);
+        Arena arena = category == null ? null : getLeasedArenaAt(event.getLocation());
+        if (arena == null) {
+            return;
+        }
+
+        int cap = getCap(category);
+        if (cap < 0 || arena.getTrackedEntities().count(category) < cap) {
+            return;
+        }
+        if (category.isEvictable()) {
+            arena.getTrackedEntities().evictOldest(category, cap - 1);
+        } else {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Count entities as they enter the world inside a leased arena
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityAdd(EntityAddToWorldEvent event) {
+        Entity entity = event.getEntity();
+        EntityCategory category = EntityCategory.of(entity);
+        Arena arena = category == null ? null : getLeasedArenaAt(entity.getLocation());
+        if (arena == null) {
+            return;
+        }
+        arena.getTrackedEntities().add(category, entity);
+        trackedIn.put(entity.getUniqueId(), arena);
+    }
+
+    /**
+     * Stop counting entities once they leave the world
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemove(EntityRemoveFromWorldEvent event) {
+        Entity entity = event.getEntity();
+        Arena arena = trackedIn.remove(entity.getUniqueId());
+        if (arena != null) {
+            arena.getTrackedEntities().remove(EntityCategory.of(entity), entity);
+        }
+    }
+
+    /**
+     * Stop counting everything in an arena, once its lease ends or it is taken out of rotation
+     */
+    public void forget(Arena arena) {
+        arena.getTrackedEntities().clear();
+        if (!trackedIn.isEmpty()) {
+            trackedIn.values().removeIf(tracked -> tracked == arena);
+        }
+    }
+
+    /**
+     * Stop counting entities that are no longer inside the arena they were counted in.
+     * Items and projectiles fire no move events, so tracked entities are checked on a timer.
+     */
+    private void uncountEscaped() {
+        if (trackedIn.isEmpty()) {
+            return;
+        }
+        for (Arena arena : new HashSet<>(trackedIn.values())) {
+            for (Entity entity : arena.getTrackedEntities().removeIf(tracked -> !arena.contains(tracked.getLocation()))) {
+                trackedIn.remove(entity.getUniqueId());
+            }
+        }
+    }
+
+    private Arena getLeasedArenaAt(Location location) {
+        Arena arena = plugin.getArenaManager().getArenaAt(location.getWorld(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        return arena != null && arena.isInUse() ? arena : null;
+    }
+
+    /**
+     * Configured cap for a category, negative for no cap
+     */
+    private int getCap(EntityCategory category) {
+        return plugin.getSettings().arenas().entityCaps().get(category);
+    }
+}
@@ -3,11 +3,31 @@ package com.ezduels.listeners;
 import com.ezduels.EzDuelsPlugin;
 import com.ezduels.model.Arena;
 import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockMultiPlaceEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.List;
 
 /**
  * Listener for arena-related events
@@ -26,10 +46,14 @@ public class ArenaListener implements Listener {
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent event) {
         Player player = event.getPlayer();
-        Duel duel = plugin.getDuelManager().getDuel(player);
+        DuelSession session = plugin.getDuelManager().getSession(player);
+        if (session == null) {
+            return;
+        }
+        Duel duel = session.duel();
         
-        if (duel == null || duel.getState() != Duel.DuelState.FIGHTING) {
-            if(duel != null && duel.getState() == Duel.DuelState.COUNTDOWN) {
+        if (duel.getState() != Duel.DuelState.FIGHTING) {
+            if(duel.getState() == Duel.DuelState.COUNTDOWN) {
                 event.setCancelled(true);
             }
             return;
@@ -43,6 +67,16 @@ public class ArenaListener implements Listener {
         // Check if block is within arena bounds
         if (!arena.contains(event.getBlock().getLocation())) {
             event.setCancelled(true);
+            return;
+        }
+
+        // Remember the change so the reset can undo it
+        if (event instanceof BlockMultiPlaceEvent multiPlaceEvent) {
+            for (BlockState state : multiPlaceEvent.getReplacedBlockStates()) {
+                arena.markDirty(state.getBlock());
+            }
+        } else {
+            arena.markDirty(event.getBlock());
         }
     }
     
@@ -52,10 +86,14 @@ public class ArenaListener implements Listener {
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
         Player player = event.getPlayer();
-        Duel duel = plugin.getDuelManager().getDuel(player);
+        DuelSession session = plugin.getDuelManager().getSession(player);
+        if (session == null) {
+            return;
+        }
+        Duel duel = session.duel();
 
-        if (duel == null || duel.getState() != Duel.DuelState.FIGHTING) {
-            if(duel != null && duel.getState() == Duel.DuelState.COUNTDOWN) {
+        if (duel.getState() != Duel.DuelState.FIGHTING) {
+            if(duel.getState() == Duel.DuelState.COUNTDOWN) {
                 event.setCancelled(true);
             }
             return;
@@ -69,6 +107,134 @@ public class ArenaListener implements Listener {
         // Check if block is within arena bounds
         if (!arena.contains(event.getBlock().getLocation())) {
             event.setCancelled(true);
+            return;
+        }
+
+        // Remember the change so the reset can undo it
+        arena.markDirty(event.getBlock());
+    }
+
+    /**
+     * Track blocks destroyed by entity explosions (TNT, creepers, crystals...)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            recordChange(block);
+        }
+    }
+
+    /**
+     * Track blocks destroyed by block explosions (beds, respawn anchors...)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            recordChange(block);
+        }
+    }
+
+    /**
+     * Track fluid flow and dragon egg teleports
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        recordChange(event.getToBlock());
+    }
+
+    /**
+     * Track blocks burnt away by fire
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track fire being lit
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track fire spread
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track blocks formed by fluids meeting (cobblestone, obsidian...)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track blocks fading away (fire burning out, ice melting...)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track falling blocks landing or being picked up
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        recordChange(event.getBlock());
+    }
+
+    /**
+     * Track blocks pushed by pistons, along with the piston head
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        recordPistonMove(event.getBlock(), event.getDirection(), event.getBlocks());
+    }
+
+    /**
+     * Track blocks pulled by sticky pistons, along with the piston head
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        recordPistonMove(event.getBlock(), event.getDirection(), event.getBlocks());
+    }
+
+    /**
+     * Keep the arena pool's warm set up to date as arena chunks unload
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        if (!plugin.getArenaManager().getArenaIndex().hasWorld(event.getWorld())) {
+            return;
+        }
+        plugin.getArenaManager().onChunkUnload(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    private void recordPistonMove(Block piston, BlockFace direction, List<Block> blocks) {
+        recordChange(piston);
+        recordChange(piston.getRelative(direction));
+        for (Block block : blocks) {
+            recordChange(block);
+            recordChange(block.getRelative(direction));
+            recordChange(block.getRelative(direction.getOppositeFace()));
+        }
+    }
+
+    /**
+     * Record a block change in whichever arena contains the block, so the next reset restores it
+     * (the {@link ArenaProtectionListener} already stopped changes to arenas not in use)
+     */
+    private void recordChange(Block block) {
+        Arena arena = plugin.getArenaManager().getArenaAt(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (arena != null) {
+            arena.markDirty(block);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,289 @@
+package com.ezduels.listeners;
+
+import com.ezduels.EzDuelsPlugin;
+import com.ezduels.arena.ArenaIndex;
+import com.ezduels.model.Arena;
+import com.ezduels.model.Duel;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPistonEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+
+import java.util.List;
+
+/**
+ * Keeps world events from crossing arena boundaries.
+ * Explosions, fluid flow, pistons, fire and spreading blocks may act within an arena in use or
+ * outside of all arenas, but never from one side of a boundary to the other. Arenas not in use
+ * do not change at all, so a duel never starts in an arena damaged since its last reset.
+ * Only the players fighting in an arena can edit it, and admins while it is not in use (to
+ * rebuild it before recapturing it). Every handler first rejects events in worlds without
+ * arenas, then classifies blocks through the {@link ArenaIndex}, so events nowhere near an
+ * arena cost a couple of comparisons.
+ * Changes that are allowed inside an arena are recorded by the {@link ArenaListener}.
+ */
+public class ArenaProtectionListener implements Listener {
+
+    private final EzDuelsPlugin plugin;
+
+    public ArenaProtectionListener(EzDuelsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Keep entity explosions (TNT, creepers, crystals...) on their own side of arena boundaries
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        if (!index.hasWorld(event.getLocation().getWorld())) {
+            return;
+        }
+        Block origin = event.getLocation().getBlock();
+        containExplosion(index, arenaAt(index, origin), event.blockList());
+    }
+
+    /**
+     * Keep block explosions (beds, respawn anchors...) on their own side of arena boundaries
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        if (!index.hasWorld(event.getBlock().getWorld())) {
+            return;
+        }
+        containExplosion(index, arenaAt(index, event.getBlock()), event.blockList());
+    }
+
+    /**
+     * Stop fluids (and dragon eggs) moving into or out of an arena, or within one not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        if (crossesBoundary(event.getBlock(), event.getToBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Stop pistons pushing blocks across an arena boundary
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        if (crossesBoundary(event, event.getBlocks())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Stop sticky pistons pulling blocks across an arena boundary
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        if (crossesBoundary(event, event.getBlocks())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Stop fire burning arena blocks from outside, outside blocks from inside, or blocks of an arena not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        if (crossesBoundary(event.getIgnitingBlock(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Stop fire and lava lighting blocks across an arena boundary, and anything lighting an arena not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        if (crossesBoundary(event.getIgnitingBlock(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Stop fire, vines, grass... spreading across an arena boundary
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        if (crossesBoundary(event.getSource(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Keep blocks from forming (snow, ice, cobblestone...) in an arena not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        if (isInIdleArena(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Keep blocks from fading (ice melting, coral dying...) in an arena not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        if (isInIdleArena(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Keep endermen, falling blocks, sheep... from changing an arena not in use
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        if (isInIdleArena(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Only the duel using an arena may build in it
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        if (isForeignEdit(event.getPlayer(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Only the duel using an arena may break blocks in it
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        if (isForeignEdit(event.getPlayer(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Only the duel using an arena may pour fluids in it
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        if (isForeignEdit(event.getPlayer(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Only the duel using an arena may scoop fluids out of it
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        if (isForeignEdit(event.getPlayer(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Drop every block from an explosion that is not in the same arena (or lack of one) as its origin,
+     * or that is in an arena not in use
+     */
+    private void containExplosion(ArenaIndex index, Arena origin, List<Block> blocks) {
+        blocks.removeIf(block -> {
+            Arena arena = arenaAt(index, block);
+            return arena != origin || isIdle(arena);
+        });
+    }
+
+    /**
+     * Whether a piston, its head, or any block it moves ends up in a different arena than the piston
+     */
+    private boolean crossesBoundary(BlockPistonEvent event, List<Block> blocks) {
+        Block piston = event.getBlock();
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        if (!index.hasWorld(piston.getWorld())) {
+            return false;
+        }
+
+        Arena arena = arenaAt(index, piston);
+        BlockFace direction = event.getDirection();
+        if (isIdle(arena) || arenaAt(index, piston.getRelative(direction)) != arena) {
+            return true;
+        }
+        for (Block block : blocks) {
+            if (arenaAt(index, block) != arena || arenaAt(index, block.getRelative(direction)) != arena
+                    || arenaAt(index, block.getRelative(direction.getOppositeFace())) != arena) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a change spreading from one block (null if it has no source block) to another crosses
+     * an arena boundary or lands in an arena not in use
+     */
+    private boolean crossesBoundary(Block from, Block to) {
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        if (!index.hasWorld(to.getWorld())) {
+            return false;
+        }
+        Arena arena = arenaAt(index, to);
+        return isIdle(arena) || (from != null && arenaAt(index, from) != arena);
+    }
+
+    private boolean isInIdleArena(Block block) {
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        return index.hasWorld(block.getWorld()) && isIdle(arenaAt(index, block));
+    }
+
+    /**
+     * Whether a player is editing an arena they are not fighting in. Admins may rebuild
+     * an arena while no duel is using it.
+     */
+    private boolean isForeignEdit(Player player, Block block) {
+        ArenaIndex index = plugin.getArenaManager().getArenaIndex();
+        if (!index.hasWorld(block.getWorld())) {
+            return false;
+        }
+        Arena arena = arenaAt(index, block);
+        if (arena == null) {
+            return false;
+        }
+        Duel duel = plugin.getDuelManager().getDuel(player);
+        if (duel != null && duel.getArena() == arena) {
+            return false;
+        }
+        return arena.isInUse() || arena.isResetting() || !player.hasPermission("ezduels.admin");
+    }
+
+    /**
+     * Whether an arena exists and no duel is using it, so nothing may change it
+     */
+    private static boolean isIdle(Arena arena) {
+        return arena != null && !arena.isInUse();
+    }
+
+    private static Arena arenaAt(ArenaIndex index, Block block) {
+        return index.getArenaAt(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+}
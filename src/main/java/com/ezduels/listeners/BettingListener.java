@@ -2,6 +2,7 @@ package com.ezduels.listeners;
 
 import com.ezduels.EzDuelsPlugin;
 import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -28,8 +29,12 @@ public class BettingListener implements Listener {
         }
         
         // Check if player is in betting phase
-        Duel duel = plugin.getDuelManager().getDuel(player);
-        if (duel == null || !duel.isBettingEnabled()) {
+        DuelSession session = plugin.getDuelManager().getSession(player);
+        if (session == null) {
+            return;
+        }
+        Duel duel = session.duel();
+        if (!duel.isBettingEnabled()) {
             return;
         }
         
@@ -2,6 +2,7 @@ package com.ezduels.listeners;
 
 import com.ezduels.EzDuelsPlugin;
 import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
 import org.bukkit.GameMode;
 import org.bukkit.GameRule;
 import org.bukkit.Location;
@@ -35,9 +36,13 @@ public class DuelListener implements Listener {
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player player = event.getEntity();
-        Duel duel = plugin.getDuelManager().getDuel(player);
+        DuelSession session = plugin.getDuelManager().getSession(player);
+        if (session == null) {
+            return;
+        }
+        Duel duel = session.duel();
         
-        if (duel == null || duel.getState() != Duel.DuelState.FIGHTING) {
+        if (duel.getState() != Duel.DuelState.FIGHTING) {
             return;
         }
         
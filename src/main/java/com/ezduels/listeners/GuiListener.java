@@ -1,12 +1,11 @@
 package com.ezduels.listeners;
 
 import com.ezduels.EzDuelsPlugin;
-import com.ezduels.model.Arena;
+import com.ezduels.config.Message;
 import com.ezduels.model.Duel;
 import com.ezduels.model.Prize;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -101,18 +100,13 @@ public class GuiListener implements Listener {
         List<String> arenaGroups = new ArrayList<>(plugin.getArenaManager().getArenaGroups());
         arenaGroups.add(0, "AUTO"); // Add AUTO as first option
         
-        String currentArena = duel.getArena() != null ? duel.getArena().getBasename() : "AUTO";
+        String currentArena = duel.getArenaGroup() != null ? duel.getArenaGroup() : "AUTO";
         int currentIndex = arenaGroups.indexOf(currentArena);
         int nextIndex = (currentIndex + 1) % arenaGroups.size();
         
+        // Only the group is chosen here, an arena from it is leased when the fight starts
         String nextArena = arenaGroups.get(nextIndex);
-        if ("AUTO".equals(nextArena)) {
-            duel.setArena(null);
-        } else {
-            // Get an available arena from the group
-            Arena arena = plugin.getArenaManager().getAvailableArena(nextArena);
-            duel.setArena(arena);
-        }
+        duel.setArenaGroup("AUTO".equals(nextArena) ? null : nextArena);
         
         plugin.getGuiManager().refreshDuelSetupGui(player, duel);
     }
@@ -229,30 +223,21 @@ public class GuiListener implements Listener {
      * Confirm duel setup
      */
     private void confirmDuelSetup(Player player, Duel duel) {
-        // Set state to pending
-        duel.setState(Duel.DuelState.PENDING);
+        // Set state to pending, unless the setup was already confirmed or cancelled
+        if (!plugin.getDuelManager().getStateMachine().transition(duel, Duel.DuelState.CREATING, Duel.DuelState.PENDING)) {
+            return;
+        }
         player.closeInventory();
         
         // Send challenge message to target
-        Component challengeMessage = MiniMessage.miniMessage().deserialize(
-            plugin.getConfig().getString("messages.duel-challenge", "")
-                .replace("{challenger}", player.getName())
-        );
+        Component challengeMessage = plugin.getMessageCatalog().render(Message.DUEL_CHALLENGE, player.getName());
         
         String lootDrop = duel.isKeepInventory() ? "Disabled" : "Enabled";
         String betting = duel.isBettingEnabled() ? "Enabled" : "Disabled";
-        String arena = duel.getArena() != null ? duel.getArena().getBasename() : "Auto";
-        
-        Component detailsMessage = MiniMessage.miniMessage().deserialize(
-            plugin.getConfig().getString("messages.duel-details", "")
-                .replace("{loot}", lootDrop)
-                .replace("{betting}", betting)
-                .replace("{arena}", arena)
-        );
+        String arena = duel.getArenaGroup() != null ? duel.getArenaGroup() : "Auto";
         
-        Component acceptMessage = MiniMessage.miniMessage().deserialize(
-            plugin.getConfig().getString("messages.duel-accept", "")
-        );
+        Component detailsMessage = plugin.getMessageCatalog().render(Message.DUEL_DETAILS, lootDrop, betting, arena);
+        Component acceptMessage = plugin.getMessageCatalog().render(Message.DUEL_ACCEPT);
         
         duel.getTarget().sendMessage(challengeMessage);
         duel.getTarget().sendMessage(detailsMessage);
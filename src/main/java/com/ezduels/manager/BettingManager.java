@@ -1,14 +1,13 @@
 package com.ezduels.manager;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.config.Message;
 import com.ezduels.model.Duel;
+import com.ezduels.timer.TimerTask;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -21,9 +20,9 @@ public class BettingManager {
     private final EzDuelsPlugin plugin;
     private final Map<UUID, Map<Player, List<ItemStack>>> activeBets;
     private final Map<UUID, Set<Player>> confirmedBets;
-    private final Map<UUID, BukkitTask> betTasks;
-    private final Map<UUID, BukkitTask> reminderTasks;
-    private final Map<UUID, BukkitTask> confirmationCountdownTasks;
+    private final Map<UUID, TimerTask> betTasks;
+    private final Map<UUID, TimerTask> reminderTasks;
+    private final Map<UUID, TimerTask> confirmationCountdownTasks;
     private final Map<UUID, Integer> countdownStages;
 
     public BettingManager(EzDuelsPlugin plugin) {
@@ -63,15 +62,15 @@ public class BettingManager {
      * Start the bet timeout task
      */
     private void startBetTimeout(Duel duel) {
-        int duration = plugin.getConfig().getInt("duels.bet-menu-duration", 300);
+        int duration = plugin.getSettings().duels().betMenuDuration();
         
-        BukkitTask task = new BukkitRunnable() {
+        TimerTask task = new TimerTask() {
             @Override
             public void run() {
                 // Timeout betting
                 timeoutBetting(duel);
             }
-        }.runTaskLater(plugin, duration * 20L);
+        }.runLater(plugin.getTimerWheel(), duel.getTimers(), duration * 20L);
         
         betTasks.put(duel.getId(), task);
     }
@@ -80,14 +79,14 @@ public class BettingManager {
      * Start the reminder task
      */
     private void startReminderTask(Duel duel) {
-        int interval = plugin.getConfig().getInt("duels.bet-reminder-interval", 5);
+        int interval = plugin.getSettings().duels().betReminderInterval();
         
-        BukkitTask task = new BukkitRunnable() {
+        TimerTask task = new TimerTask() {
             @Override
             public void run() {
                 sendBetReminder(duel);
             }
-        }.runTaskTimer(plugin, interval * 20L, interval * 20L);
+        }.runTimer(plugin.getTimerWheel(), duel.getTimers(), interval * 20L, interval * 20L);
         
         reminderTasks.put(duel.getId(), task);
     }
@@ -96,10 +95,7 @@ public class BettingManager {
      * Send bet reminder to players
      */
     private void sendBetReminder(Duel duel) {
-        Component message = MiniMessage.miniMessage().deserialize(
-            plugin.getConfig().getString("messages.bet-reminder", 
-                "<gray>[EzDuels] You have an active bet menu. Click here or type /betmenu to reopen.")
-        );
+        Component message = plugin.getMessageCatalog().render(Message.BET_REMINDER);
         // Conditionally send betting menu reminder if not already open.
         if(Objects.equals(plugin.getGuiManager().getOpenGui(duel.getChallenger()), "betting"))
             duel.getChallenger().sendMessage(message);
@@ -163,7 +159,7 @@ public class BettingManager {
      * Start a cooldown for the betting
      */
     public void startConfirmCountdownTask(Duel duel) {
-        BukkitTask task = new BukkitRunnable() {
+        TimerTask task = new TimerTask() {
             int countdownStage = 0;
             @Override
             public void run() {
@@ -180,7 +176,7 @@ public class BettingManager {
                 plugin.getGuiManager().refreshBetGui(duel.getChallenger(), duel);
                 plugin.getGuiManager().refreshBetGui(duel.getTarget(), duel);
             }
-        }.runTaskTimer(plugin, 20L, 20L);
+        }.runTimer(plugin.getTimerWheel(), duel.getTimers(), 20L, 20L);
 
         confirmationCountdownTasks.put(duel.getId(), task);
     }
@@ -188,7 +184,7 @@ public class BettingManager {
      * Cancel a confirmation countdown task
      */
     public void cancelConfirmCountdownTask(Duel duel) {
-        BukkitTask countdownTask = confirmationCountdownTasks.get(duel.getId());
+        TimerTask countdownTask = confirmationCountdownTasks.get(duel.getId());
         if(countdownTask != null) {
             countdownTask.cancel();
         }
@@ -215,12 +211,12 @@ public class BettingManager {
      */
     private void finalizeBetting(Duel duel) {
         // Cancel timeout and reminder tasks
-        BukkitTask betTask = betTasks.remove(duel.getId());
+        TimerTask betTask = betTasks.remove(duel.getId());
         if (betTask != null) {
             betTask.cancel();
         }
         
-        BukkitTask reminderTask = reminderTasks.remove(duel.getId());
+        TimerTask reminderTask = reminderTasks.remove(duel.getId());
         if (reminderTask != null) {
             reminderTask.cancel();
         }
@@ -331,12 +327,12 @@ public class BettingManager {
         activeBets.remove(duelId);
         confirmedBets.remove(duelId);
         
-        BukkitTask betTask = betTasks.remove(duelId);
+        TimerTask betTask = betTasks.remove(duelId);
         if (betTask != null) {
             betTask.cancel();
         }
         
-        BukkitTask reminderTask = reminderTasks.remove(duelId);
+        TimerTask reminderTask = reminderTasks.remove(duelId);
         if (reminderTask != null) {
             reminderTask.cancel();
         }
@@ -1,18 +1,19 @@
 package com.ezduels.manager;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.config.Message;
 import com.ezduels.listeners.PlayerListener;
 import com.ezduels.model.Arena;
 import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
+import com.ezduels.model.DuelStateMachine;
+import com.ezduels.timer.TimerTask;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import javax.annotation.Nullable;
 import java.util.*;
@@ -25,19 +26,22 @@ import java.util.concurrent.ConcurrentHashMap;
 public class DuelManager {
     
     private final EzDuelsPlugin plugin;
-    private final Map<UUID, Duel> activeDuels;
-    private final Map<UUID, Duel> pendingDuels;
-    private final Map<UUID, BukkitTask> countdownTasks;
+    private final PlayerSessionIndex sessions;
+    private final Map<UUID, TimerTask> countdownTasks;
     private final Map<UUID, Set<UUID>> skipVotes;
     private final Map<UUID, Location> previousLocation;
+    private final DuelStateMachine stateMachine;
 
     public DuelManager(EzDuelsPlugin plugin) {
         this.plugin = plugin;
-        this.activeDuels = new ConcurrentHashMap<>();
-        this.pendingDuels = new ConcurrentHashMap<>();
+        this.sessions = new PlayerSessionIndex();
         this.countdownTasks = new ConcurrentHashMap<>();
         this.skipVotes = new ConcurrentHashMap<>();
         this.previousLocation = new ConcurrentHashMap<>();
+        this.stateMachine = new DuelStateMachine();
+        stateMachine.onEnter(Duel.DuelState.FIGHTING, duel -> duel.setFightStartTime(System.currentTimeMillis()));
+        stateMachine.onEnter(Duel.DuelState.FINISHED, duel -> duel.setEndTime(System.currentTimeMillis()));
+        stateMachine.onEnter(Duel.DuelState.CANCELLED, duel -> duel.setEndTime(System.currentTimeMillis()));
     }
     
     /**
@@ -50,8 +54,7 @@ public class DuelManager {
         }
         
         Duel duel = new Duel(challenger, target);
-        pendingDuels.put(challenger.getUniqueId(), duel);
-        pendingDuels.put(target.getUniqueId(), duel);
+        sessions.add(duel);
         
         return duel;
     }
@@ -60,33 +63,26 @@ public class DuelManager {
      * Accept a duel challenge
      */
     public boolean acceptDuel(Player player) {
-        Duel duel = pendingDuels.get(player.getUniqueId());
-        if (duel == null || !duel.getTarget().equals(player)) {
+        DuelSession session = sessions.get(player);
+        if (session == null || session.isChallenger()) {
             return false;
         }
-        
-        // Move from pending to active
-        pendingDuels.remove(duel.getChallenger().getUniqueId());
-        pendingDuels.remove(duel.getTarget().getUniqueId());
-        
-        duel.setState(Duel.DuelState.SETTING_UP);
-        activeDuels.put(duel.getChallenger().getUniqueId(), duel);
-        activeDuels.put(duel.getTarget().getUniqueId(), duel);
-        
-        return true;
+        // Only a challenge that has been sent can be accepted, and only once
+        return stateMachine.transition(session.duel(), Duel.DuelState.PENDING, Duel.DuelState.SETTING_UP);
     }
 
     /**
      * Deny a duel challenge
      */
     public boolean denyDuel(Player player) {
-        Duel duel = pendingDuels.get(player.getUniqueId());
-        if (duel == null || !duel.getTarget().equals(player)) {
+        DuelSession session = sessions.get(player);
+        if (session == null || session.isChallenger()) {
             return false;
         }
-        pendingDuels.remove(duel.getChallenger().getUniqueId());
-        pendingDuels.remove(duel.getTarget().getUniqueId());
-        cleanup(duel);
+        if (!stateMachine.transition(session.duel(), Duel.DuelState.PENDING, Duel.DuelState.CANCELLED)) {
+            return false;
+        }
+        cleanup(session.duel());
         return true;
     }
 
@@ -94,14 +90,14 @@ public class DuelManager {
      * Start the duel countdown
      */
     public void startCountdown(Duel duel) {
-        if (duel.getState() != Duel.DuelState.SETTING_UP) {
+        if (!stateMachine.transition(duel, Duel.DuelState.SETTING_UP, Duel.DuelState.COUNTDOWN)) {
             return;
         }
         
-        duel.setState(Duel.DuelState.COUNTDOWN);
-        int countdownDuration = plugin.getConfig().getInt("duels.countdown-duration", 30);
+        reserveArena(duel);
+        int countdownDuration = plugin.getSettings().duels().countdownDuration();
         
-        BukkitTask task = new BukkitRunnable() {
+        TimerTask task = new TimerTask() {
             int timeLeft = countdownDuration;
             
             @Override
@@ -113,17 +109,14 @@ public class DuelManager {
                 }
                 
                 // Send countdown message to both players
-                Component message = MiniMessage.miniMessage().deserialize(
-                    plugin.getConfig().getString("messages.countdown", "<yellow>{seconds}s till fight. /skip to skip</yellow>")
-                        .replace("{seconds}", String.valueOf(timeLeft))
-                );
+                Component message = plugin.getMessageCatalog().render(Message.COUNTDOWN, timeLeft);
                 
                 duel.getChallenger().sendActionBar(message);
                 duel.getTarget().sendActionBar(message);
                 
                 timeLeft--;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+        }.runTimer(plugin.getTimerWheel(), duel.getTimers(), 0L, 20L);
         
         countdownTasks.put(duel.getId(), task);
         skipVotes.put(duel.getId(), new HashSet<>());
@@ -133,7 +126,7 @@ public class DuelManager {
      * Vote to skip the countdown
      */
     public void skipCountdown(Player player) {
-        Duel duel = activeDuels.get(player.getUniqueId());
+        Duel duel = getDuel(player);
         if (duel == null || duel.getState() != Duel.DuelState.COUNTDOWN) {
             return;
         }
@@ -150,7 +143,7 @@ public class DuelManager {
             votes.contains(duel.getTarget().getUniqueId())) {
             
             // Cancel countdown and start fight
-            BukkitTask task = countdownTasks.remove(duel.getId());
+            TimerTask task = countdownTasks.remove(duel.getId());
             if (task != null) {
                 task.cancel();
             }
@@ -161,35 +154,108 @@ public class DuelManager {
     }
     
     /**
-     * Start the actual fight
+     * Lease an arena as the countdown starts so its chunks can load in the background meanwhile
+     */
+    private void reserveArena(Duel duel) {
+        // Duels already waiting for an arena go first
+        if (plugin.getArenaManager().getAdmissionQueue().hasWaiting(duel)) {
+            return;
+        }
+        Arena arena = plugin.getArenaManager().acquireArena(duel);
+        if (arena != null) {
+            duel.setArena(arena);
+            arena.loadChunks(plugin.getArenaManager().getChunkTickets());
+        }
+    }
+    
+    /**
+     * Start the actual fight, or queue for an arena if none could be reserved
      */
     private void startFight(Duel duel) {
-        duel.setState(Duel.DuelState.FIGHTING);
+        // Try again in case an arena was freed during the countdown
+        if (duel.getArena() == null) {
+            reserveArena(duel);
+        }
+        if (duel.getArena() == null) {
+            if (!stateMachine.transition(duel, Duel.DuelState.COUNTDOWN, Duel.DuelState.QUEUED)) {
+                return;
+            }
+            int position = plugin.getArenaManager().getAdmissionQueue().enqueue(duel);
+            Component message = Component.text("No arena is free right now, you are #" + position + " in the queue.")
+                .color(NamedTextColor.YELLOW);
+            duel.getChallenger().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+            duel.getTarget().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+            return;
+        }
+        if (stateMachine.transition(duel, Duel.DuelState.COUNTDOWN, Duel.DuelState.STARTING)) {
+            beginFight(duel);
+        }
+    }
+    
+    /**
+     * Start a queued duel in the arena it has been given
+     */
+    public void admitQueuedDuel(Duel duel, Arena arena) {
+        if (!stateMachine.transition(duel, Duel.DuelState.QUEUED, Duel.DuelState.STARTING)) {
+            plugin.getArenaManager().releaseArena(arena, duel.getId(), false);
+            return;
+        }
+        duel.setArena(arena);
+        beginFight(duel);
+    }
+    
+    /**
+     * Teleport both players into the duel's arena once its chunks and snapshot are loaded, then start the fight.
+     * The duel only becomes FIGHTING once both players are in, so leaving before that cancels it instead of
+     * handing out a win.
+     */
+    private void beginFight(Duel duel) {
         // Save their starting location
         previousLocation.put(duel.getChallenger().getUniqueId(), duel.getChallenger().getLocation());
         previousLocation.put(duel.getTarget().getUniqueId(), duel.getTarget().getLocation());
 
-        // Get or assign arena
-        if (duel.getArena() != null) {
-            duel.getArena().setInUse(true);
-            duel.getChallenger().teleport(duel.getArena().getSpawnPoint1());
-            duel.getTarget().teleport(duel.getArena().getSpawnPoint2());
-        } else {
-            // Auto-assign an arena
-            for (String arenaGroup : plugin.getArenaManager().getArenaGroups()) {
-                Arena availableArena = plugin.getArenaManager().getAvailableArena(arenaGroup);
-                if (availableArena != null) {
-                    duel.setArena(availableArena);
-                    availableArena.setInUse(true);
-                    duel.getChallenger().teleport(availableArena.getSpawnPoint1());
-                    duel.getTarget().teleport(availableArena.getSpawnPoint2());
-                    break;
+        Arena arena = duel.getArena();
+        arena.loadChunks(plugin.getArenaManager().getChunkTickets())
+            .thenCombine(plugin.getArenaManager().materialize(arena), (loaded, materialized) -> null)
+            .thenCompose(loaded -> duel.getChallenger().teleportAsync(arena.getSpawnPoint1())
+                .thenCombine(duel.getTarget().teleportAsync(arena.getSpawnPoint2()), Boolean::logicalAnd))
+            .whenComplete((teleported, error) -> plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (duel.getState() != Duel.DuelState.STARTING) {
+                    // Cancelled while loading, e.g. a player left
+                    returnFromArena(duel, arena);
+                    return;
+                }
+                if (error != null || !teleported) {
+                    Component message = Component.text("Could not teleport you into the arena, the duel has been cancelled.")
+                        .color(NamedTextColor.RED);
+                    duel.getChallenger().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+                    duel.getTarget().sendMessage(EzDuelsPlugin.getPluginPrefix().append(Component.space()).append(message));
+                    returnFromArena(duel, arena);
+                    cancelDuel(duel);
+                    return;
+                }
+                if (stateMachine.transition(duel, Duel.DuelState.STARTING, Duel.DuelState.FIGHTING)) {
+                    preparePlayers(duel);
                 }
+            }));
+    }
+    
+    /**
+     * Bring back whoever made it into the arena of a duel that never started
+     */
+    private void returnFromArena(Duel duel, Arena arena) {
+        for (Player player : List.of(duel.getChallenger(), duel.getTarget())) {
+            Location previous = previousLocation.remove(player.getUniqueId());
+            if (previous != null && player.isOnline() && arena.contains(player.getLocation())) {
+                player.teleportAsync(previous);
             }
         }
-        // Save the current state of the arena
-        duel.getArena().saveState();
-
+    }
+    
+    /**
+     * Heal both players and start the PvP cooldown once they are in the arena
+     */
+    private void preparePlayers(Duel duel) {
         // Set their health and saturation to full
         duel.getChallenger().setHealth(20);
         duel.getChallenger().setFoodLevel(20);
@@ -209,7 +275,7 @@ public class DuelManager {
      * Start PvP cooldown before combat begins
      */
     private void startPvpCooldown(Duel duel) {
-        new BukkitRunnable() {
+        new TimerTask() {
             int timeLeft = 5;
             
             @Override
@@ -237,15 +303,17 @@ public class DuelManager {
                 
                 timeLeft--;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+        }.runTimer(plugin.getTimerWheel(), duel.getTimers(), 0L, 20L);
     }
     
     /**
      * End a duel with a winner
      */
     public void endDuel(Duel duel, Player winner, @Nullable List<ItemStack> drops) {
-        duel.setState(Duel.DuelState.FINISHED);
-        duel.setEndTime(System.currentTimeMillis());
+        // A death and a quit in the same tick can both end the duel, only the first one counts
+        if (!stateMachine.transition(duel, Duel.DuelState.FIGHTING, Duel.DuelState.FINISHED)) {
+            return;
+        }
         
         Player loser = duel.getOpponent(winner);
         // Set the drops to be the loser's inventory contents if drops is null and keep inventory is off
@@ -282,15 +350,21 @@ public class DuelManager {
      * Cancel a duel
      */
     public void cancelDuel(Duel duel) {
-        duel.setState(Duel.DuelState.CANCELLED);
+        if (!stateMachine.transition(duel, Duel.DuelState.CANCELLED)) {
+            return; // Already over
+        }
         
         // Cancel any running tasks
-        BukkitTask task = countdownTasks.remove(duel.getId());
+        TimerTask task = countdownTasks.remove(duel.getId());
         if (task != null) {
             task.cancel();
         }
         skipVotes.remove(duel.getId());
         
+        // Stop waiting for an arena, or give it back if the fight already had one
+        plugin.getArenaManager().getAdmissionQueue().remove(duel);
+        releaseArena(duel);
+        
         // Clean up betting
         if (duel.isBettingEnabled()) {
             plugin.getBettingManager().returnBetItems(duel);
@@ -305,15 +379,16 @@ public class DuelManager {
      * Handle teleporting the victor and loser to their original location after the duel has ended
      */
     private void teleportPlayersBack(Duel duel, Player winner) {
-        // Wait for 10 seconds before teleporting them back
-        new BukkitRunnable() {
+        // Wait for 10 seconds before teleporting them back. Not owned by the duel, which is cleaned up right after this.
+        new TimerTask() {
             int timeLeft = 10;
 
             @Override
             public void run() {
                 if (timeLeft <= 0) {
-                    // Set the loser to survival and teleport them back
+                    // Set both to survival (the PvP cooldown may have been cancelled) and teleport them back
                     Player loser = duel.getOpponent(winner);
+                    winner.setGameMode(GameMode.SURVIVAL);
                     loser.setGameMode(GameMode.SURVIVAL);
 
                     // Teleport them both back
@@ -329,17 +404,9 @@ public class DuelManager {
                     // Pop them from the list
                     previousLocation.remove(winner.getUniqueId());
                     previousLocation.remove(loser.getUniqueId());
-                    new BukkitRunnable() {
-                        @Override
-                        public void run() {
-                            // Release arena
-                            if (duel.getArena() != null) {
-                                duel.getArena().regenerate();
-                                duel.getArena().setInUse(false);
-                            }
-                            plugin.getLogger().info("Reset arena!");
-                        }
-                    }.runTaskLater(plugin, 5L); // Run later so players are definitely teleported away before arena is reset.
+                    // Release arena once it has been reset
+                    // Run later so players are definitely teleported away before arena is reset.
+                    plugin.getTimerWheel().runLater(null, 5L, () -> releaseArena(duel));
                     cancel();
                     return;
                 }
@@ -353,8 +420,22 @@ public class DuelManager {
 
                 timeLeft--;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+        }.runTimer(plugin.getTimerWheel(), null, 0L, 20L);
     }
+    /**
+     * Reset the duel's arena and end its lease once the reset has finished
+     */
+    private void releaseArena(Duel duel) {
+        Arena arena = duel.getArena();
+        if (arena == null || arena.isResetting() || !duel.getId().equals(arena.getLeaseHolder())) {
+            return; // No arena, or its reset is already queued
+        }
+        plugin.getArenaManager().regenerate(arena, () -> {
+            plugin.getArenaManager().releaseArena(arena, duel.getId(), duel.getFightStartTime() != 0);
+            plugin.getLogger().info("Reset arena " + arena.getName() + "!");
+        });
+    }
+    
     /**
      * Handle duel end logic (prizes, inventory, etc.)
      */
@@ -378,35 +459,34 @@ public class DuelManager {
      * Clean up duel data
      */
     private void cleanup(Duel duel) {
-        activeDuels.remove(duel.getChallenger().getUniqueId());
-        activeDuels.remove(duel.getTarget().getUniqueId());
-        pendingDuels.remove(duel.getChallenger().getUniqueId());
-        pendingDuels.remove(duel.getTarget().getUniqueId());
+        sessions.remove(duel);
         
-        BukkitTask task = countdownTasks.remove(duel.getId());
-        if (task != null) {
-            task.cancel();
-        }
+        // Cancels the countdown, PvP cooldown and betting timers in one go
+        duel.getTimers().cancelAll();
+        countdownTasks.remove(duel.getId());
         skipVotes.remove(duel.getId());
     }
     
     /**
-     * Check if a player is in a duel
+     * Check if a player is in a duel. Cheap enough for listeners to call first on every event.
      */
     public boolean isInDuel(Player player) {
-        return activeDuels.containsKey(player.getUniqueId()) || 
-               pendingDuels.containsKey(player.getUniqueId());
+        return sessions.contains(player);
     }
     
     /**
-     * Get a player's active duel
+     * Get a player's duel, whether it has been accepted yet or not
      */
     public Duel getDuel(Player player) {
-        Duel duel = activeDuels.get(player.getUniqueId());
-        if (duel == null) {
-            duel = pendingDuels.get(player.getUniqueId());
-        }
-        return duel;
+        DuelSession session = sessions.get(player);
+        return session != null ? session.duel() : null;
+    }
+    
+    /**
+     * Get a player's duel and their side of it, or null if they are not in a duel
+     */
+    public DuelSession getSession(Player player) {
+        return sessions.get(player);
     }
     
     /**
@@ -414,21 +494,29 @@ public class DuelManager {
      */
     public void cleanup() {
         // Cancel all running tasks
-        for (BukkitTask task : countdownTasks.values()) {
+        for (TimerTask task : countdownTasks.values()) {
             task.cancel();
         }
         countdownTasks.clear();
         
         // Clean up all data
-        activeDuels.clear();
-        pendingDuels.clear();
+        sessions.clear();
         skipVotes.clear();
     }
     
     /**
-     * Get all active duels
+     * The transition table every duel state change goes through
+     */
+    public DuelStateMachine getStateMachine() {
+        return stateMachine;
+    }
+    
+    /**
+     * Get all active duels, i.e. ones that have been accepted
      */
     public Collection<Duel> getActiveDuels() {
-        return new HashSet<>(activeDuels.values());
+        Collection<Duel> duels = sessions.getDuels();
+        duels.removeIf(duel -> duel.getState() == Duel.DuelState.CREATING || duel.getState() == Duel.DuelState.PENDING);
+        return duels;
     }
 }
\ No newline at end of file
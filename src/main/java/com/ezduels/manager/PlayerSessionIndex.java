@@ -0,0 +1,91 @@
+package com.ezduels.manager;
+
+import com.ezduels.model.Duel;
+import com.ezduels.model.DuelSession;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every player's duel session, from the moment they are challenged until the duel is cleaned up.
+ * Block, inventory, teleport and death events look players up here for everyone on the server,
+ * so the common answer (not in a duel) is one map lookup, or none at all while nobody is dueling.
+ */
+public class PlayerSessionIndex {
+
+    private final Map<UUID, DuelSession> sessions;
+
+    public PlayerSessionIndex() {
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add both players of a duel
+     */
+    public void add(Duel duel) {
+        put(duel.getChallenger().getUniqueId(), new DuelSession(duel, DuelSession.Role.CHALLENGER));
+        put(duel.getTarget().getUniqueId(), new DuelSession(duel, DuelSession.Role.TARGET));
+    }
+
+    /**
+     * Remove both players of a duel, unless they have since moved on to another one
+     */
+    public void remove(Duel duel) {
+        remove(duel.getChallenger().getUniqueId(), duel);
+        remove(duel.getTarget().getUniqueId(), duel);
+    }
+
+    /**
+     * Whether a player is in any duel, checked first by listeners to bail out early
+     */
+    public boolean contains(Player player) {
+        return contains(player.getUniqueId());
+    }
+
+    public boolean contains(UUID playerId) {
+        return !sessions.isEmpty() && sessions.containsKey(playerId);
+    }
+
+    /**
+     * A player's session, or null if they are not in a duel
+     */
+    public DuelSession get(Player player) {
+        return get(player.getUniqueId());
+    }
+
+    public DuelSession get(UUID playerId) {
+        return sessions.isEmpty() ? null : sessions.get(playerId);
+    }
+
+    /**
+     * Every duel with at least one player in the index
+     */
+    public Collection<Duel> getDuels() {
+        Set<Duel> duels = new HashSet<>();
+        for (DuelSession session : sessions.values()) {
+            duels.add(session.duel());
+        }
+        return duels;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void clear() {
+        sessions.clear();
+    }
+
+    void put(UUID playerId, DuelSession session) {
+        sessions.put(playerId, session);
+    }
+
+    private void remove(UUID playerId, Duel duel) {
+        sessions.computeIfPresent(playerId, (id, session) -> session.duel() == duel ? null : session);
+    }
+}
@@ -1,9 +1,9 @@
 package com.ezduels.manager;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.config.Message;
 import com.ezduels.model.Prize;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
@@ -44,7 +44,7 @@ public class PrizeManager {
         }
         
         long expirationTime = System.currentTimeMillis() + 
-            (plugin.getConfig().getInt("prizes.expiration-time", 3600) * 1000L);
+            (plugin.getSettings().prizes().expirationTime() * 1000L);
         
         Prize prize = new Prize(player.getUniqueId(), items, expirationTime);
         
@@ -187,7 +187,7 @@ public class PrizeManager {
      * Start the reminder task
      */
     private void startReminderTask() {
-        int interval = plugin.getConfig().getInt("prizes.reminder-interval", 300);
+        int interval = plugin.getSettings().prizes().reminderInterval();
         
         reminderTask = new BukkitRunnable() {
             @Override
@@ -213,10 +213,7 @@ public class PrizeManager {
      * Send prize reminders to players
      */
     private void sendPrizeReminders() {
-        Component message = MiniMessage.miniMessage().deserialize(
-            plugin.getConfig().getString("messages.prize-reminder", 
-                "<gray>[EzDuels] You have unclaimed prizes. Use /prizes to view them before they expire.")
-        );
+        Component message = plugin.getMessageCatalog().render(Message.PRIZE_REMINDER);
         
         for (UUID playerId : playerPrizes.keySet()) {
             Player player = plugin.getServer().getPlayer(playerId);
@@ -1,6 +1,11 @@
 package com.ezduels.model;
 
 import com.ezduels.EzDuelsPlugin;
+import com.ezduels.arena.ArenaEntities;
+import com.ezduels.arena.ArenaJournal;
+import com.ezduels.arena.ArenaSnapshot;
+import com.ezduels.arena.ChunkTickets;
+import com.ezduels.arena.RegenerationJob;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEdit;
@@ -9,9 +14,12 @@ import com.sk89q.worldedit.blocks.BaseItem;
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.entity.BaseEntity;
-import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
@@ -30,31 +38,64 @@ import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.weather.WeatherType;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Projectile;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a duel arena
  */
 public class Arena {
+
+    private static final BlockFace[] NEIGHBOUR_FACES = {
+            BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST
+    };
     
     private final String name;
     private final String basename;
     private final World world;
-    private final BlockArrayClipboard clipboard; // Saves the current state of the arena for regeneration.
-    private final CuboidRegion arenaRegion;
+    private ArenaSnapshot snapshot; // Pristine state of the arena used for regeneration, null until captured
+    private volatile CuboidRegion arenaRegion; // WorldEdit view of the bounds, created on first use
+    private final ArenaJournal journal; // Blocks changed since the last snapshot
     private final Location minPoint;
     private final Location maxPoint;
-    private final Location spawnPoint1;
-    private final Location spawnPoint2;
-    private boolean inUse;
+    private final int minX, minY, minZ; // Block bounds, normalised so min <= max
+    private final int maxX, maxY, maxZ;
+    private Location spawnPoint1;
+    private Location spawnPoint2;
+    private final AtomicReference<UUID> lease; // Id of the duel holding the arena, null when free
+    private volatile boolean resetting;
+    private volatile long leasedAt;       // When the current lease started
+    private volatile long lastReleasedAt; // When the last lease ended, used to retire idle copies
+    private boolean ephemeral; // Provisioned copy that is not saved to arenas.yml
+    private final Set<Long> ticketedChunks; // Chunk keys this arena holds a ticket reference on
+    private CompletableFuture<Void> chunkLoad;
+    private int chunkGeneration; // Bumped on release so late chunk loads do not take tickets
+    private final ArenaEntities trackedEntities; // Entities spawned during the current lease
+    private int sweeps;              // Entity sweep statistics, to spot arenas that leak entities
+    private long sweptEntities;
+    private int lastSweptEntities;
     
     public Arena(String name, String basename, World world, Location minPoint, Location maxPoint, 
                  Location spawnPoint1, Location spawnPoint2) {
@@ -63,16 +104,20 @@ public class Arena {
         this.world = world;
         this.minPoint = minPoint;
         this.maxPoint = maxPoint;
+        this.minX = Math.min(minPoint.getBlockX(), maxPoint.getBlockX());
+        this.minY = Math.min(minPoint.getBlockY(), maxPoint.getBlockY());
+        this.minZ = Math.min(minPoint.getBlockZ(), maxPoint.getBlockZ());
+        this.maxX = Math.max(minPoint.getBlockX(), maxPoint.getBlockX());
+        this.maxY = Math.max(minPoint.getBlockY(), maxPoint.getBlockY());
+        this.maxZ = Math.max(minPoint.getBlockZ(), maxPoint.getBlockZ());
         this.spawnPoint1 = spawnPoint1;
         this.spawnPoint2 = spawnPoint2;
-        this.inUse = false;
+        this.lease = new AtomicReference<>();
+        this.lastReleasedAt = System.currentTimeMillis();
+        this.ticketedChunks = new HashSet<>();
+        this.trackedEntities = new ArenaEntities();
 
-        // WorldEdit config for regeneration
-        com.sk89q.worldedit.world.World WeWorld = BukkitAdapter.adapt(world);
-        BlockVector3 pos1 = BlockVector3.at(minPoint.getBlockX(), minPoint.getBlockY(), minPoint.getBlockZ());
-        BlockVector3 pos2 = BlockVector3.at(maxPoint.getBlockX(), maxPoint.getBlockY(), maxPoint.getBlockZ());
-        this.arenaRegion = new CuboidRegion(WeWorld, pos1, pos2);
-        this.clipboard = new BlockArrayClipboard(arenaRegion);
+        this.journal = new ArenaJournal(EzDuelsPlugin.getInstance().getSettings().arenas().regeneration().journalLimit());
     }
     
     public String getName() {
@@ -95,6 +140,30 @@ public class Arena {
         return maxPoint;
     }
     
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public int getMaxX() {
+        return maxX;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getMaxZ() {
+        return maxZ;
+    }
+    
     public Location getSpawnPoint1() {
         return spawnPoint1;
     }
@@ -103,68 +172,429 @@ public class Arena {
         return spawnPoint2;
     }
     
+    public void setSpawnPoint1(Location spawnPoint1) {
+        this.spawnPoint1 = spawnPoint1;
+    }
+    
+    public void setSpawnPoint2(Location spawnPoint2) {
+        this.spawnPoint2 = spawnPoint2;
+    }
+    
     public boolean isInUse() {
-        return inUse;
+        return lease.get() != null;
     }
     
-    public void setInUse(boolean inUse) {
-        this.inUse = inUse;
+    /**
+     * Get the id of the duel currently leasing this arena
+     */
+    @Nullable
+    public UUID getLeaseHolder() {
+        return lease.get();
+    }
+    
+    /**
+     * Atomically lease the arena to a duel
+     * @return false if the arena is already leased
+     */
+    public boolean tryLease(UUID duelId) {
+        if (!lease.compareAndSet(null, duelId)) {
+            return false;
+        }
+        leasedAt = System.currentTimeMillis();
+        return true;
     }
     
+    /**
+     * Atomically end a duel's lease on the arena
+     * @return false if the arena was not leased to that duel
+     */
+    public boolean release(UUID duelId) {
+        if (!lease.compareAndSet(duelId, null)) {
+            return false;
+        }
+        lastReleasedAt = System.currentTimeMillis();
+        return true;
+    }
+    
+    public long getLeasedAt() {
+        return leasedAt;
+    }
+    
+    public long getLastReleasedAt() {
+        return lastReleasedAt;
+    }
+    
+    /**
+     * Whether this arena is a copy provisioned on demand, rather than one defined by an admin
+     */
+    public boolean isEphemeral() {
+        return ephemeral;
+    }
+    
+    public void setEphemeral(boolean ephemeral) {
+        this.ephemeral = ephemeral;
+    }
+    
+    /**
+     * Whether the arena is waiting for or undergoing a reset
+     */
+    public boolean isResetting() {
+        return resetting;
+    }
+    
+    public void setResetting(boolean resetting) {
+        this.resetting = resetting;
+    }
+    
+    public ArenaJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Load the arena's chunks in the background and hold a ticket reference on each
+     * until {@link #releaseChunks} is called. Repeated calls share the same load.
+     */
+    public CompletableFuture<Void> loadChunks(ChunkTickets tickets) {
+        if (chunkLoad != null) {
+            return chunkLoad;
+        }
+
+        int generation = chunkGeneration;
+        List<CompletableFuture<Chunk>> loads = new ArrayList<>();
+        int minChunkX = minX >> 4;
+        int maxChunkX = maxX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkZ = maxZ >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                // Chunk futures complete on the main thread
+                loads.add(world.getChunkAtAsync(chunkX, chunkZ).thenApply(chunk -> {
+                    if (generation == chunkGeneration && ticketedChunks.add(chunk.getChunkKey())) {
+                        tickets.acquire(chunk);
+                    }
+                    return chunk;
+                }));
+            }
+        }
+        chunkLoad = CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]));
+        return chunkLoad;
+    }
+
+    /**
+     * Drop the ticket references taken by {@link #loadChunks}, letting the chunks unload again
+     * once no other arena holds them
+     */
+    public void releaseChunks(ChunkTickets tickets) {
+        chunkGeneration++;
+        chunkLoad = null;
+        for (long chunkKey : ticketedChunks) {
+            tickets.release(world, chunkKey);
+        }
+        ticketedChunks.clear();
+    }
+
+    /**
+     * Remove what a fight leaves behind: drops, XP and projectiles inside the arena, and every
+     * entity spawned during the current lease (mobs, vehicles, crystals...). Entities that are
+     * part of the build, like item frames or armor stands, are left alone.
+     * Only the arena's own loaded chunks are scanned.
+     * @return number of entities removed
+     */
+    public int sweepEntities() {
+        int removed = trackedEntities.removeAll();
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    continue; // Unloaded chunks cannot hold anything left over from a fight
+                }
+                for (Entity entity : world.getChunkAt(chunkX, chunkZ).getEntities()) {
+                    if (isTransient(entity) && contains(entity.getLocation())) {
+                        entity.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        sweeps++;
+        sweptEntities += removed;
+        lastSweptEntities = removed;
+        return removed;
+    }
+
+    /**
+     * Entities that never belong to an arena's build, even when they were not seen spawning
+     * (e.g. after a crash)
+     */
+    private static boolean isTransient(Entity entity) {
+        return entity instanceof Item || entity instanceof ExperienceOrb || entity instanceof Projectile;
+    }
+
+    /**
+     * Entities counted against this arena's caps during the current lease
+     */
+    public ArenaEntities getTrackedEntities() {
+        return trackedEntities;
+    }
+
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    public long getSweptEntities() {
+        return sweptEntities;
+    }
+
+    public int getLastSweptEntities() {
+        return lastSweptEntities;
+    }
+
     /**
      * Check if a location is within the arena bounds
      */
     public boolean contains(Location location) {
-        if (!location.getWorld().equals(world)) {
-            return false;
+        return location.getWorld().equals(world)
+                && containsBlock(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * WorldEdit region of the arena bounds. Only needed to capture or read snapshots, so
+     * it is not built for every arena at startup.
+     */
+    private CuboidRegion getRegion() {
+        if (arenaRegion == null) {
+            // WorldEdit config for regeneration
+            com.sk89q.worldedit.world.World WeWorld = BukkitAdapter.adapt(world);
+            BlockVector3 pos1 = BlockVector3.at(minPoint.getBlockX(), minPoint.getBlockY(), minPoint.getBlockZ());
+            BlockVector3 pos2 = BlockVector3.at(maxPoint.getBlockX(), maxPoint.getBlockY(), maxPoint.getBlockZ());
+            arenaRegion = new CuboidRegion(WeWorld, pos1, pos2);
+        }
+        return arenaRegion;
+    }
+
+    /**
+     * Whether every chunk of the arena is still loaded, so using it costs no chunk loads
+     */
+    public boolean isWarm() {
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    return false;
+                }
+            }
         }
-        
-        double x = location.getX();
-        double y = location.getY();
-        double z = location.getZ();
-        
-        return x >= Math.min(minPoint.getX(), maxPoint.getX()) &&
-               x <= Math.max(minPoint.getX(), maxPoint.getX()) &&
-               y >= Math.min(minPoint.getY(), maxPoint.getY()) &&
-               y <= Math.max(minPoint.getY(), maxPoint.getY()) &&
-               z >= Math.min(minPoint.getZ(), maxPoint.getZ()) &&
-               z <= Math.max(minPoint.getZ(), maxPoint.getZ());
+        return true;
+    }
+
+    /**
+     * Check if a block position is within the arena bounds
+     */
+    public boolean containsBlock(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
     }
 
     /**
-     * Saves the current arena state to a world edit clipboard.
+     * Record that a block in the arena changed so it gets restored on the next reset.
+     * Its direct neighbours are recorded too, since attached blocks (torches, door halves,
+     * plants...) can be popped off by physics without firing an event of their own.
      */
-    public void saveState() {
+    public void markDirty(Block block) {
+        if (!block.getWorld().equals(world)) {
+            return;
+        }
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        if (containsBlock(x, y, z)) {
+            journal.record(x, y, z);
+        }
+        for (BlockFace face : NEIGHBOUR_FACES) {
+            int nx = x + face.getModX();
+            int ny = y + face.getModY();
+            int nz = z + face.getModZ();
+            if (containsBlock(nx, ny, nz)) {
+                journal.record(nx, ny, nz);
+            }
+        }
+    }
+
+    /**
+     * Copies the current arena blocks into a WorldEdit clipboard.
+     * Only use this to take a pristine snapshot, i.e. when the arena is known to be intact
+     * (on definition or an admin re-capture).
+     */
+    public Clipboard saveState() {
         com.sk89q.worldedit.world.World WeWorld = BukkitAdapter.adapt(world);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(getRegion());
         // Taken from WorldEdit API Docs
         try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(WeWorld, -1)) {
             ForwardExtentCopy forwardExtentCopy = new ForwardExtentCopy(
-                    editSession, arenaRegion, clipboard, arenaRegion.getMinimumPoint()
+                    editSession, getRegion(), clipboard, getRegion().getMinimumPoint()
             );
             // configure here
             Operations.complete(forwardExtentCopy);
         } catch (WorldEditException e) {
             throw new RuntimeException(e);
         }
-        EzDuelsPlugin.getInstance().getLogger().info("Saved Current Arena state!");
+        return clipboard;
     }
+
     /**
-     * Attempts to regenerate the arena to its original state.
+     * Whether a pristine snapshot has been captured or loaded
+     */
+    public boolean hasSnapshot() {
+        return snapshot != null;
+    }
+
+    public ArenaSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replace the pristine snapshot. Snapshots are position-independent, the arena
+     * pastes it at its own minimum corner.
+     * @return the previous snapshot, if any
+     */
+    public ArenaSnapshot setSnapshot(ArenaSnapshot snapshot) {
+        ArenaSnapshot previous = this.snapshot;
+        this.snapshot = snapshot;
+        // The snapshot now matches the world, nothing is dirty anymore
+        journal.clear();
+        return previous;
+    }
+
+    /**
+     * Replace the pristine snapshot with one captured earlier (see {@link com.ezduels.arena.ChunkCapture}),
+     * keeping the blocks journaled since it was taken
+     * @return the previous snapshot, if any
+     */
+    public ArenaSnapshot swapSnapshot(ArenaSnapshot snapshot) {
+        ArenaSnapshot previous = this.snapshot;
+        this.snapshot = snapshot;
+        return previous;
+    }
+
+    /**
+     * Read a schematic file saved for this arena
+     * @return the clipboard, or null if it does not match this arena's dimensions
+     */
+    public Clipboard readSchematic(File file) throws IOException {
+        ClipboardFormat format = ClipboardFormats.findByFile(file);
+        if (format == null) {
+            throw new IOException("Unknown schematic format: " + file.getName());
+        }
+        Clipboard clipboard;
+        try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
+            clipboard = reader.read();
+        }
+        if (!clipboard.getDimensions().equals(getRegion().getDimensions())) {
+            return null;
+        }
+        return clipboard;
+    }
+    
+    /**
+     * Build a reset job for the blocks changed since the last snapshot.
+     * Only blocks recorded in the journal are restored, unless the journal overflowed,
+     * in which case the whole region is restored. The journal is cleared.
      * CALL THIS WHEN DUEL IS COMPLETE!
      */
-    public void regenerate() {
-        com.sk89q.worldedit.world.World WeWorld = BukkitAdapter.adapt(world);
-        // Paste the WorldGuard clipboard here
-        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(WeWorld, -1)) {
-            Operation operation = new ClipboardHolder(clipboard)
-                    .createPaste(editSession)
-                    .to(arenaRegion.getMinimumPoint())
-                    // configure here
-                    .build();
-            Operations.complete(operation);
-        } catch (WorldEditException e) {
-            throw new RuntimeException(e);
+    public RegenerationJob createRegenerationJob(Runnable onComplete) {
+        RegenerationJob job;
+        if (snapshot == null) {
+            EzDuelsPlugin.getInstance().getLogger().warning("Arena " + name + " has no snapshot, it cannot be regenerated!");
+            job = RegenerationJob.partial(this, new long[0], onComplete);
+        } else if (journal.isOverflowed()) {
+            return createFullRegenerationJob(onComplete);
+        } else {
+            job = RegenerationJob.partial(this, journal.toArray(), onComplete);
+        }
+        journal.clear();
+        return job;
+    }
+
+    /**
+     * Build a job pasting the whole snapshot over the arena, regardless of the journal.
+     * The journal is cleared.
+     */
+    public RegenerationJob createFullRegenerationJob(Runnable onComplete) {
+        BlockVector3 min = getRegion().getMinimumPoint();
+        BlockVector3 max = getRegion().getMaximumPoint();
+        journal.clear();
+        return RegenerationJob.full(this, min.x(), min.y(), min.z(), max.x(), max.y(), max.z(), onComplete);
+    }
+
+    /**
+     * Build a job setting the whole arena to air, used to remove a retired copy from the world.
+     * The journal is cleared.
+     */
+    public RegenerationJob createClearJob(Runnable onComplete) {
+        BlockVector3 min = getRegion().getMinimumPoint();
+        BlockVector3 max = getRegion().getMaximumPoint();
+        journal.clear();
+        return RegenerationJob.clear(this, min.x(), min.y(), min.z(), max.x(), max.y(), max.z(), onComplete);
+    }
+
+    /**
+     * Restore packed block positions [from, to) from the snapshot
+     * @return number of blocks written
+     */
+    public int restoreBlocks(EditSession editSession, long[] positions, int from, int to) throws WorldEditException {
+        BlockVector3 origin = getRegion().getMinimumPoint();
+        for (int i = from; i < to; i++) {
+            long packed = positions[i];
+            int x = ArenaJournal.unpackX(packed);
+            int y = ArenaJournal.unpackY(packed);
+            int z = ArenaJournal.unpackZ(packed);
+            editSession.setBlock(BlockVector3.at(x, y, z),
+                    snapshot.getBlock(x - origin.x(), y - origin.y(), z - origin.z()));
+        }
+        return to - from;
+    }
+
+    /**
+     * Restore every block of the snapshot inside the given bounds
+     * (clamped to the arena region)
+     * @return number of blocks written
+     */
+    public int restoreSection(EditSession editSession, int minX, int minY, int minZ,
+                              int maxX, int maxY, int maxZ) throws WorldEditException {
+        BlockVector3 regionMin = getRegion().getMinimumPoint();
+        BlockVector3 regionMax = getRegion().getMaximumPoint();
+        int fromX = Math.max(minX, regionMin.x()), toX = Math.min(maxX, regionMax.x());
+        int fromY = Math.max(minY, regionMin.y()), toY = Math.min(maxY, regionMax.y());
+        int fromZ = Math.max(minZ, regionMin.z()), toZ = Math.min(maxZ, regionMax.z());
+
+        int written = 0;
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int y = fromY; y <= toY; y++) {
+                    editSession.setBlock(BlockVector3.at(x, y, z),
+                            snapshot.getBlock(x - regionMin.x(), y - regionMin.y(), z - regionMin.z()));
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Set every block inside the given bounds (clamped to the arena region) to air
+     * @return number of blocks written
+     */
+    public int clearSection(EditSession editSession, int minX, int minY, int minZ,
+                            int maxX, int maxY, int maxZ) throws WorldEditException {
+        BlockVector3 regionMin = getRegion().getMinimumPoint();
+        BlockVector3 regionMax = getRegion().getMaximumPoint();
+        BlockState air = BlockTypes.AIR.getDefaultState();
+        int written = 0;
+        for (int x = Math.max(minX, regionMin.x()); x <= Math.min(maxX, regionMax.x()); x++) {
+            for (int z = Math.max(minZ, regionMin.z()); z <= Math.min(maxZ, regionMax.z()); z++) {
+                for (int y = Math.max(minY, regionMin.y()); y <= Math.min(maxY, regionMax.y()); y++) {
+                    editSession.setBlock(BlockVector3.at(x, y, z), air);
+                    written++;
+                }
+            }
         }
-        EzDuelsPlugin.getInstance().getLogger().info("Pasted new Arena!");
+        return written;
     }
-}
\ No newline at end of file
+}
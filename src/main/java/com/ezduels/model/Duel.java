@@ -1,8 +1,10 @@
 package com.ezduels.model;
 
+import com.ezduels.timer.TimerGroup;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a duel between two players
@@ -14,10 +16,13 @@ public class Duel {
     private final Player target;
     private boolean keepInventory;
     private boolean bettingEnabled;
-    private Arena arena;
-    private DuelState state;
+    private String arenaGroup; // Arena group chosen during setup, null for AUTO
+    private Arena arena;       // Arena leased for the fight
+    private final AtomicReference<DuelState> state; // Only changed through DuelStateMachine
     private long startTime;
+    private long fightStartTime; // When the duel became FIGHTING, 0 if it never did
     private long endTime;
+    private final TimerGroup timers = new TimerGroup(); // Every timer the duel owns
     
     public Duel(Player challenger, Player target) {
         this.id = UUID.randomUUID();
@@ -25,7 +30,7 @@ public class Duel {
         this.target = target;
         this.keepInventory = true;
         this.bettingEnabled = false;
-        this.state = DuelState.CREATING;
+        this.state = new AtomicReference<>(DuelState.CREATING);
         this.startTime = System.currentTimeMillis();
     }
     
@@ -33,6 +38,13 @@ public class Duel {
         return id;
     }
     
+    /**
+     * Timers owned by this duel, all cancelled when it is cleaned up
+     */
+    public TimerGroup getTimers() {
+        return timers;
+    }
+    
     public Player getChallenger() {
         return challenger;
     }
@@ -57,6 +69,14 @@ public class Duel {
         this.bettingEnabled = bettingEnabled;
     }
     
+    public String getArenaGroup() {
+        return arenaGroup;
+    }
+    
+    public void setArenaGroup(String arenaGroup) {
+        this.arenaGroup = arenaGroup;
+    }
+    
     public Arena getArena() {
         return arena;
     }
@@ -66,17 +86,25 @@ public class Duel {
     }
     
     public DuelState getState() {
-        return state;
+        return state.get();
     }
     
-    public void setState(DuelState state) {
-        this.state = state;
+    boolean compareAndSetState(DuelState expected, DuelState state) {
+        return this.state.compareAndSet(expected, state);
     }
     
     public long getStartTime() {
         return startTime;
     }
     
+    public long getFightStartTime() {
+        return fightStartTime;
+    }
+    
+    public void setFightStartTime(long fightStartTime) {
+        this.fightStartTime = fightStartTime;
+    }
+    
     public long getEndTime() {
         return endTime;
     }
@@ -112,6 +140,8 @@ public class Duel {
         PENDING,        // Waiting for acceptance
         SETTING_UP,     // Setting up bets/arena
         COUNTDOWN,      // Pre-fight countdown
+        QUEUED,         // Waiting for a free arena
+        STARTING,       // Being moved into the arena
         FIGHTING,       // Active fight
         FINISHED,       // Duel completed
         CANCELLED       // Duel cancelled
@@ -0,0 +1,25 @@
+package com.ezduels.model;
+
+import org.bukkit.entity.Player;
+
+/**
+ * A player's place in a duel: the duel and which side of it they are on
+ */
+public record DuelSession(Duel duel, Role role) {
+
+    public enum Role {
+        CHALLENGER, // Sent the challenge
+        TARGET      // Was challenged
+    }
+
+    public boolean isChallenger() {
+        return role == Role.CHALLENGER;
+    }
+
+    /**
+     * The player on the other side of the duel
+     */
+    public Player opponent() {
+        return role == Role.CHALLENGER ? duel.getTarget() : duel.getChallenger();
+    }
+}
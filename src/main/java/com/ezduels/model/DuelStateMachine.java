@@ -0,0 +1,149 @@
+package com.ezduels.model;
+
+import com.ezduels.model.Duel.DuelState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * The legal duel state transitions, and the only way a duel changes state.
+ * Transitions are compare-and-set, so when two events race to move a duel on (a death and a
+ * quit in the same tick both ending it) exactly one wins and the other is rejected and counted.
+ * Exit hooks of the old state then enter hooks of the new one run for the winner only.
+ */
+public class DuelStateMachine {
+
+    private static final Map<DuelState, Set<DuelState>> TRANSITIONS = new EnumMap<>(DuelState.class);
+
+    static {
+        TRANSITIONS.put(DuelState.CREATING, EnumSet.of(DuelState.PENDING, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.PENDING, EnumSet.of(DuelState.SETTING_UP, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.SETTING_UP, EnumSet.of(DuelState.COUNTDOWN, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.COUNTDOWN, EnumSet.of(DuelState.QUEUED, DuelState.STARTING, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.QUEUED, EnumSet.of(DuelState.STARTING, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.STARTING, EnumSet.of(DuelState.FIGHTING, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.FIGHTING, EnumSet.of(DuelState.FINISHED, DuelState.CANCELLED));
+        TRANSITIONS.put(DuelState.FINISHED, EnumSet.noneOf(DuelState.class));
+        TRANSITIONS.put(DuelState.CANCELLED, EnumSet.noneOf(DuelState.class));
+    }
+
+    private static final int STATES = DuelState.values().length;
+
+    private final Map<DuelState, List<Consumer<Duel>>> enterHooks;
+    private final Map<DuelState, List<Consumer<Duel>>> exitHooks;
+    private final AtomicLongArray rejected; // Rejected transitions, indexed by from * STATES + to
+
+    public DuelStateMachine() {
+        this.enterHooks = new EnumMap<>(DuelState.class);
+        this.exitHooks = new EnumMap<>(DuelState.class);
+        for (DuelState state : DuelState.values()) {
+            enterHooks.put(state, new CopyOnWriteArrayList<>());
+            exitHooks.put(state, new CopyOnWriteArrayList<>());
+        }
+        this.rejected = new AtomicLongArray(STATES * STATES);
+    }
+
+    /**
+     * Whether the table allows going from one state to another
+     */
+    public static boolean isLegal(DuelState from, DuelState to) {
+        return TRANSITIONS.get(from).contains(to);
+    }
+
+    /**
+     * Move a duel from an expected state to another
+     * @return false if the duel was not in the expected state or the transition is illegal
+     */
+    public boolean transition(Duel duel, DuelState from, DuelState to) {
+        if (!isLegal(from, to) || !duel.compareAndSetState(from, to)) {
+            reject(duel.getState(), to);
+            return false;
+        }
+        fireHooks(duel, from, to);
+        return true;
+    }
+
+    /**
+     * Move a duel to a state from whichever state it is in, if that transition is legal
+     * @return false if the duel's current state cannot go to the given state
+     */
+    public boolean transition(Duel duel, DuelState to) {
+        while (true) {
+            DuelState from = duel.getState();
+            if (!isLegal(from, to)) {
+                reject(from, to);
+                return false;
+            }
+            if (duel.compareAndSetState(from, to)) {
+                fireHooks(duel, from, to);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Run a hook every time a duel enters a state
+     */
+    public void onEnter(DuelState state, Consumer<Duel> hook) {
+        enterHooks.get(state).add(hook);
+    }
+
+    /**
+     * Run a hook every time a duel leaves a state
+     */
+    public void onExit(DuelState state, Consumer<Duel> hook) {
+        exitHooks.get(state).add(hook);
+    }
+
+    /**
+     * Rejected transitions so far, as "FROM -> TO" and count, most frequent first
+     */
+    public Map<String, Long> getRejectedTransitions() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        DuelState[] states = DuelState.values();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < rejected.length(); i++) {
+            if (rejected.get(i) > 0) {
+                indices.add(i);
+            }
+        }
+        indices.sort((a, b) -> Long.compare(rejected.get(b), rejected.get(a)));
+        for (int index : indices) {
+            counts.put(states[index / STATES] + " -> " + states[index % STATES], rejected.get(index));
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Total number of rejected transitions
+     */
+    public long getRejectedCount() {
+        long total = 0;
+        for (int i = 0; i < rejected.length(); i++) {
+            total += rejected.get(i);
+        }
+        return total;
+    }
+
+    private void reject(DuelState from, DuelState to) {
+        rejected.incrementAndGet(from.ordinal() * STATES + to.ordinal());
+    }
+
+    private void fireHooks(Duel duel, DuelState from, DuelState to) {
+        for (Consumer<Duel> hook : exitHooks.get(from)) {
+            hook.accept(duel);
+        }
+        for (Consumer<Duel> hook : enterHooks.get(to)) {
+            hook.accept(duel);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.ezduels.timer;
+
+/**
+ * The timers owned by one duel, so they can all be cancelled with one call.
+ * Tasks join the group when scheduled and leave it when they finish or are cancelled.
+ */
+public final class TimerGroup {
+
+    TimerTask head;
+    private int size;
+
+    void add(TimerTask task) {
+        task.group = this;
+        task.groupPrevious = null;
+        task.groupNext = head;
+        if (head != null) {
+            head.groupPrevious = task;
+        }
+        head = task;
+        size++;
+    }
+
+    void remove(TimerTask task) {
+        if (task.groupPrevious != null) {
+            task.groupPrevious.groupNext = task.groupNext;
+        } else {
+            head = task.groupNext;
+        }
+        if (task.groupNext != null) {
+            task.groupNext.groupPrevious = task.groupPrevious;
+        }
+        task.group = null;
+        task.groupPrevious = null;
+        task.groupNext = null;
+        size--;
+    }
+
+    /**
+     * Cancel every task in the group
+     */
+    public void cancelAll() {
+        while (head != null) {
+            head.cancel();
+        }
+    }
+
+    /**
+     * Number of scheduled tasks in the group
+     */
+    public int size() {
+        return size;
+    }
+}
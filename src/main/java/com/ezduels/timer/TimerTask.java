@@ -0,0 +1,67 @@
+package com.ezduels.timer;
+
+/**
+ * A task run by the {@link TimerWheel}, used like a BukkitRunnable: subclass it, then
+ * schedule it with {@link #runLater} or {@link #runTimer}, and call {@link #cancel()} from
+ * anywhere, including its own run method. The task is its own node in the wheel and in its
+ * {@link TimerGroup}, so scheduling and cancelling allocate nothing.
+ * Like synchronous Bukkit tasks, timers are only touched from the main thread.
+ */
+public abstract class TimerTask implements Runnable {
+
+    static final byte IDLE = 0;      // Not scheduled
+    static final byte SCHEDULED = 1; // Waiting in a wheel slot
+    static final byte FIRING = 2;    // Taken out of its slot to run this tick
+
+    // Wheel linkage, owned by the TimerWheel
+    TimerWheel wheel;
+    TimerTask previous;
+    TimerTask next;
+    int slot;
+    long rounds;  // Full turns of the wheel left before the task is due
+    long period;  // Ticks between runs, 0 for a one-shot task
+    byte state;
+    TimerTask nextExpired; // This tick's expired list, apart from the slot linkage a rescheduled task reuses
+
+    // Group linkage, owned by the TimerGroup
+    TimerGroup group;
+    TimerTask groupPrevious;
+    TimerTask groupNext;
+
+    /**
+     * Run the task once after a delay
+     * @param group group owning the task, or null
+     */
+    public final TimerTask runLater(TimerWheel wheel, TimerGroup group, long delay) {
+        wheel.schedule(this, group, delay, 0);
+        return this;
+    }
+
+    /**
+     * Run the task repeatedly, first after a delay then every period ticks, until it is cancelled
+     * @param group group owning the task, or null
+     */
+    public final TimerTask runTimer(TimerWheel wheel, TimerGroup group, long delay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        wheel.schedule(this, group, delay, period);
+        return this;
+    }
+
+    /**
+     * Stop the task. Does nothing if it is not scheduled.
+     */
+    public final void cancel() {
+        if (wheel != null) {
+            wheel.cancel(this);
+        }
+    }
+
+    /**
+     * Whether the task will run again
+     */
+    public final boolean isScheduled() {
+        return state != IDLE;
+    }
+}
@@ -0,0 +1,191 @@
+package com.ezduels.timer;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.logging.Level;
+
+/**
+ * Plugin-wide hashed timer wheel, driven by a single repeating Bukkit task.
+ * Tasks are hashed into one of {@value #WHEEL_SIZE} slots by the tick they are due, each
+ * slot being an intrusive linked list, so scheduling and cancelling are O(1) and only the
+ * tasks due this tick (or a multiple of the wheel size later) are visited each tick.
+ * Every duel timer runs on this wheel instead of its own scheduler entry.
+ */
+public class TimerWheel {
+
+    private static final int WHEEL_SIZE = 512; // Ticks per turn of the wheel, a power of two
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final Plugin plugin;
+    private final TimerTask[] slots;
+    private long currentTick;
+    private int size;
+    private BukkitTask driver;
+
+    public TimerWheel(Plugin plugin) {
+        this.plugin = plugin;
+        this.slots = new TimerTask[WHEEL_SIZE];
+    }
+
+    /**
+     * Start turning the wheel
+     */
+    public void start() {
+        if (driver == null) {
+            driver = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stop the wheel and drop every task (for plugin shutdown)
+     */
+    public void shutdown() {
+        if (driver != null) {
+            driver.cancel();
+            driver = null;
+        }
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            while (slots[i] != null) {
+                cancel(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * Run a task once after a delay
+     * @param group group owning the task, or null
+     */
+    public TimerTask runLater(TimerGroup group, long delay, Runnable task) {
+        return wrap(task).runLater(this, group, delay);
+    }
+
+    /**
+     * Run a task repeatedly until it is cancelled
+     * @param group group owning the task, or null
+     */
+    public TimerTask runTimer(TimerGroup group, long delay, long period, Runnable task) {
+        return wrap(task).runTimer(this, group, delay, period);
+    }
+
+    /**
+     * Number of scheduled tasks
+     */
+    public int size() {
+        return size;
+    }
+
+    void schedule(TimerTask task, TimerGroup group, long delay, long period) {
+        if (task.state != TimerTask.IDLE) {
+            throw new IllegalStateException("Already scheduled");
+        }
+        task.wheel = this;
+        task.period = period;
+        insert(task, delay);
+        if (group != null) {
+            group.add(task);
+        }
+        size++;
+    }
+
+    void cancel(TimerTask task) {
+        if (task.state == TimerTask.IDLE) {
+            return;
+        }
+        if (task.state == TimerTask.SCHEDULED) {
+            unlink(task);
+        }
+        // A firing task is in this tick's expired list, marking it idle is enough to skip it
+        finish(task);
+    }
+
+    /**
+     * Run every task due this tick. Called by the driver task (and by tests, which have no scheduler).
+     */
+    void tick() {
+        long tick = ++currentTick;
+        int slot = (int) (tick & MASK);
+
+        // Take the due tasks out first, so running them can freely cancel or schedule others
+        TimerTask expired = null;
+        TimerTask task = slots[slot];
+        while (task != null) {
+            TimerTask next = task.next;
+            if (task.rounds > 0) {
+                task.rounds--;
+            } else {
+                unlink(task);
+                task.state = TimerTask.FIRING;
+                task.nextExpired = expired;
+                expired = task;
+            }
+            task = next;
+        }
+
+        while (expired != null) {
+            task = expired;
+            expired = task.nextExpired;
+            task.nextExpired = null;
+            if (task.state != TimerTask.FIRING) {
+                continue; // Cancelled (and maybe scheduled again) by a task that ran before it
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                plugin.getLogger().log(Level.SEVERE, "Timer task threw an exception", t);
+            }
+            if (task.state != TimerTask.FIRING) {
+                continue; // Cancelled itself
+            }
+            if (task.period > 0) {
+                insert(task, task.period);
+            } else {
+                finish(task);
+            }
+        }
+    }
+
+    private void insert(TimerTask task, long delay) {
+        delay = Math.max(1, delay); // Like the Bukkit scheduler, the earliest is the next tick
+        int slot = (int) ((currentTick + delay) & MASK);
+        task.slot = slot;
+        task.rounds = (delay - 1) / WHEEL_SIZE;
+        task.previous = null;
+        task.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = task;
+        }
+        slots[slot] = task;
+        task.state = TimerTask.SCHEDULED;
+    }
+
+    private void unlink(TimerTask task) {
+        if (task.previous != null) {
+            task.previous.next = task.next;
+        } else {
+            slots[task.slot] = task.next;
+        }
+        if (task.next != null) {
+            task.next.previous = task.previous;
+        }
+        task.previous = null;
+        task.next = null;
+    }
+
+    private void finish(TimerTask task) {
+        task.state = TimerTask.IDLE;
+        if (task.group != null) {
+            task.group.remove(task);
+        }
+        size--;
+    }
+
+    private static TimerTask wrap(Runnable runnable) {
+        return new TimerTask() {
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
+    }
+}
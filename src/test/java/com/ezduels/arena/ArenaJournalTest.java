@@ -0,0 +1,113 @@
+package com.ezduels.arena;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArenaJournalTest {
+
+    @Test
+    void packRoundTripsWorldCoordinates() {
+        int[] horizontal = {0, 1, -1, 15, -16, 123_456, -123_456, 29_999_999, -30_000_000};
+        int[] vertical = {0, 1, -1, -64, 319, 2047, -2048};
+        for (int x : horizontal) {
+            for (int y : vertical) {
+                for (int z : horizontal) {
+                    long packed = ArenaJournal.pack(x, y, z);
+                    assertEquals(x, ArenaJournal.unpackX(packed));
+                    assertEquals(y, ArenaJournal.unpackY(packed));
+                    assertEquals(z, ArenaJournal.unpackZ(packed));
+                }
+            }
+        }
+    }
+
+    @Test
+    void packKeepsAxesApart() {
+        assertNotEquals(ArenaJournal.pack(1, 0, 0), ArenaJournal.pack(0, 0, 1));
+        assertNotEquals(ArenaJournal.pack(0, 1, 0), ArenaJournal.pack(0, 0, 1));
+        assertNotEquals(ArenaJournal.pack(-1, 0, 0), ArenaJournal.pack(0, 0, -1));
+        assertNotEquals(ArenaJournal.pack(0, -1, 0), ArenaJournal.pack(0, 0, 0));
+    }
+
+    @Test
+    void recordsEachPositionOnce() {
+        ArenaJournal journal = new ArenaJournal(16);
+        journal.record(1, 2, 3);
+        journal.record(1, 2, 3);
+        journal.record(-1, 2, 3);
+
+        assertEquals(2, journal.size());
+        assertFalse(journal.isOverflowed());
+    }
+
+    @Test
+    void keepsEveryPositionWhileGrowing() {
+        ArenaJournal journal = new ArenaJournal(4096);
+        Set<Long> expected = new HashSet<>();
+        for (int x = -10; x < 10; x++) {
+            for (int y = -64; y < -14; y++) {
+                journal.record(x, y, x * 31);
+                expected.add(ArenaJournal.pack(x, y, x * 31));
+            }
+        }
+
+        assertEquals(expected.size(), journal.size());
+        Set<Long> recorded = new HashSet<>();
+        for (long packed : journal.toArray()) {
+            recorded.add(packed);
+        }
+        assertEquals(expected, recorded);
+    }
+
+    @Test
+    void overflowsPastTheLimit() {
+        ArenaJournal journal = new ArenaJournal(3);
+        journal.record(0, 0, 0);
+        journal.record(1, 0, 0);
+        journal.record(2, 0, 0);
+        assertFalse(journal.isOverflowed());
+
+        journal.record(0, 0, 0); // Already recorded, not a new change
+        assertFalse(journal.isOverflowed());
+
+        journal.record(3, 0, 0);
+        assertTrue(journal.isOverflowed());
+        assertFalse(journal.isEmpty());
+        assertEquals(3, journal.size());
+    }
+
+    @Test
+    void limitIsAtLeastOne() {
+        ArenaJournal journal = new ArenaJournal(0);
+        journal.record(5, 5, 5);
+        assertFalse(journal.isOverflowed());
+
+        journal.record(6, 5, 5);
+        assertTrue(journal.isOverflowed());
+    }
+
+    @Test
+    void clearForgetsChangesAndOverflow() {
+        ArenaJournal journal = new ArenaJournal(100);
+        for (int i = 0; i <= 100; i++) {
+            journal.record(i, 0, 0);
+        }
+        assertTrue(journal.isOverflowed());
+
+        journal.clear();
+        assertTrue(journal.isEmpty());
+        assertEquals(0, journal.size());
+        assertEquals(0, journal.toArray().length);
+
+        journal.record(7, 8, 9);
+        assertEquals(1, journal.size());
+        assertEquals(ArenaJournal.pack(7, 8, 9), journal.toArray()[0]);
+    }
+}
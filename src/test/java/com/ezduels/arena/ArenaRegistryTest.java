@@ -0,0 +1,203 @@
+package com.ezduels.arena;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArenaRegistryTest {
+
+    private static final Logger LOGGER = Logger.getLogger("ArenaRegistryTest");
+
+    static {
+        LOGGER.setLevel(Level.OFF); // Torn logs are expected here
+    }
+
+    @TempDir
+    Path directory;
+
+    private File file;
+    private File yamlFile;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("arenas.dat").toFile();
+        yamlFile = directory.resolve("arenas.yml").toFile();
+    }
+
+    @Test
+    void latestRecordOfANameWins() {
+        ArenaRegistry registry = open();
+        registry.put(record("sky1", 0));
+        registry.put(record("sky2", 1));
+        registry.put(record("sky1", 2));
+        registry.close();
+
+        Map<String, ArenaRecord> loaded = ArenaRegistry.readLog(file, LOGGER).records();
+        assertEquals(2, loaded.size());
+        assertEquals(record("sky1", 2), loaded.get("sky1"));
+        assertEquals(record("sky2", 1), loaded.get("sky2"));
+    }
+
+    @Test
+    void partialLastRecordIsDropped() throws IOException {
+        writeThreeRecords();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(60); // A record cut off by a crash mid-append
+            out.write(new byte[10]);
+        }
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertTrue(contents.torn());
+        assertEquals(3, contents.records().size());
+    }
+
+    @Test
+    void oversizedLengthIsTreatedAsTorn() throws IOException {
+        writeThreeRecords();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(Integer.MAX_VALUE - 8);
+            out.writeInt(0);
+        }
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertTrue(contents.torn());
+        assertEquals(3, contents.records().size());
+    }
+
+    @Test
+    void negativeLengthIsTreatedAsTorn() throws IOException {
+        writeThreeRecords();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(-1);
+            out.writeInt(0);
+        }
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertTrue(contents.torn());
+        assertEquals(3, contents.records().size());
+    }
+
+    @Test
+    void corruptRecordStopsReplay() throws IOException {
+        writeThreeRecords();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length() - 10; // Inside the last record
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertTrue(contents.torn());
+        assertEquals(2, contents.records().size());
+    }
+
+    @Test
+    void loadRewritesATornLog() throws IOException {
+        writeThreeRecords();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(60);
+            out.write(new byte[10]);
+        }
+
+        ArenaRegistry registry = new ArenaRegistry(file, yamlFile, LOGGER);
+        assertEquals(3, registry.load().size());
+        registry.close();
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertFalse(contents.torn());
+        assertEquals(3, contents.recordCount());
+    }
+
+    @Test
+    void putAllWritesOneRecordPerArena() {
+        ArenaRegistry registry = open();
+        List<ArenaRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record("arena" + i, i));
+        }
+        registry.putAll(records);
+        registry.putAll(records);
+        registry.close();
+
+        ArenaRegistry.LogContents contents = ArenaRegistry.readLog(file, LOGGER);
+        assertFalse(contents.torn());
+        assertEquals(200, contents.recordCount());
+        assertEquals(records, new ArrayList<>(contents.records().values()));
+    }
+
+    @Test
+    void newerYamlIsImported() throws IOException {
+        writeThreeRecords();
+        ArenaRegistry.writeYaml(yamlFile, List.of(record("edited1", 5)));
+        assertTrue(yamlFile.setLastModified(file.lastModified() + 10_000));
+
+        ArenaRegistry registry = new ArenaRegistry(file, yamlFile, LOGGER);
+        List<ArenaRecord> loaded = new ArrayList<>(registry.load());
+        registry.close();
+
+        assertEquals(List.of(record("edited1", 5)), loaded);
+        assertEquals(1, ArenaRegistry.readLog(file, LOGGER).recordCount());
+    }
+
+    @Test
+    void brokenYamlFallsBackToTheLogAndIsKept() throws IOException {
+        writeThreeRecords();
+        Files.writeString(yamlFile.toPath(), "sky:\n  - name: [unclosed\n");
+        assertTrue(yamlFile.setLastModified(file.lastModified() + 10_000));
+        byte[] log = Files.readAllBytes(file.toPath());
+
+        ArenaRegistry registry = new ArenaRegistry(file, yamlFile, LOGGER);
+        assertEquals(3, registry.load().size());
+        registry.exportYaml();
+        registry.close();
+
+        assertEquals("sky:\n  - name: [unclosed\n", Files.readString(yamlFile.toPath()));
+        assertTrue(yamlFile.lastModified() > file.lastModified()); // Imported again once fixed
+        assertArrayEquals(log, Files.readAllBytes(file.toPath()));
+    }
+
+    private ArenaRegistry open() {
+        ArenaRegistry registry = new ArenaRegistry(file, yamlFile, LOGGER);
+        registry.load();
+        return registry;
+    }
+
+    private void writeThreeRecords() {
+        ArenaRegistry registry = open();
+        registry.put(record("sky1", 0));
+        registry.put(record("sky2", 1));
+        registry.put(record("sky3", 2));
+        registry.close();
+    }
+
+    /**
+     * An arena in the "sky" group, placed by its index; even ones have both spawn points
+     */
+    private static ArenaRecord record(String name, int index) {
+        double x = index * 128.0;
+        ArenaRecord.Position spawn1 = index % 2 == 0 ? new ArenaRecord.Position(x + 10.5, 65, 10.5, 90f, 0f) : null;
+        ArenaRecord.Position spawn2 = index % 2 == 0 ? new ArenaRecord.Position(x + 50.5, 65, 50.5, -90f, 0f) : null;
+        return new ArenaRecord(name, "sky", "duels_world", new ArenaRecord.Position(x, 60, 0, 0f, 0f),
+                new ArenaRecord.Position(x + 63, 90, 63, 0f, 0f), spawn1, spawn2);
+    }
+}
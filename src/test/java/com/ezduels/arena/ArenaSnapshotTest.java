@@ -0,0 +1,195 @@
+package com.ezduels.arena;
+
+import com.sk89q.worldedit.util.concurrency.LazyReference;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Block states are mocks, parsed back from their ids, since real ones need a running WorldEdit platform
+ */
+class ArenaSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private Map<String, BlockState> states;
+    private BlockState[] blocks;
+
+    @BeforeEach
+    void setUp() {
+        states = new HashMap<>();
+        blocks = new BlockState[40];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = state("minecraft:block_" + i);
+        }
+    }
+
+    @Test
+    void decodesEveryBlockAcrossPartialSections() {
+        ArenaSnapshot.BlockSource source = pattern(5);
+        ArenaSnapshot snapshot = ArenaSnapshot.encode(37, 20, 18, source);
+
+        assertFalse(snapshot.isDiskBacked());
+        assertEquals(5, snapshot.getPaletteSize());
+        assertEquals(37L * 20 * 18, snapshot.getVolume());
+        assertMatches(source, snapshot);
+    }
+
+    @Test
+    void decodesSectionsWithManyStates() {
+        ArenaSnapshot.BlockSource source = pattern(blocks.length); // More than the 16 states a section palette starts with
+        ArenaSnapshot snapshot = ArenaSnapshot.encode(16, 16, 16, source);
+
+        assertEquals(blocks.length, snapshot.getPaletteSize());
+        assertMatches(source, snapshot);
+    }
+
+    @Test
+    void uniformArenaNeedsNoIndices() {
+        ArenaSnapshot.BlockSource source = (x, y, z) -> blocks[0].toBaseBlock();
+        ArenaSnapshot snapshot = ArenaSnapshot.encode(40, 10, 40, source);
+
+        assertEquals(1, snapshot.getPaletteSize());
+        assertMatches(source, snapshot);
+        assertTrue(snapshot.estimateMemory() < snapshot.estimateClipboardMemory());
+    }
+
+    @Test
+    void keepsBlockEntitiesWithTheirNbt() {
+        BaseBlock chest = mock(BaseBlock.class);
+        when(chest.toImmutableState()).thenReturn(blocks[7]);
+        when(chest.getNbtReference()).thenReturn(LazyReference.computed(LinCompoundTag.builder().build()));
+        ArenaSnapshot.BlockSource plain = pattern(4);
+        ArenaSnapshot.BlockSource source = (x, y, z) -> x == 20 && y == 3 && z == 1 ? chest : plain.getBlock(x, y, z);
+
+        ArenaSnapshot snapshot = ArenaSnapshot.encode(30, 8, 4, source);
+
+        assertEquals(1, snapshot.getBlockEntityCount());
+        assertSame(chest, snapshot.getBlock(20, 3, 1));
+        assertSame(plain.getBlock(19, 3, 1).toImmutableState(), snapshot.getBlock(19, 3, 1).toImmutableState());
+    }
+
+    @Test
+    void contentHashDependsOnTheBlocks() {
+        ArenaSnapshot first = ArenaSnapshot.encode(20, 20, 20, pattern(6));
+        ArenaSnapshot same = ArenaSnapshot.encode(20, 20, 20, pattern(6));
+        ArenaSnapshot different = ArenaSnapshot.encode(20, 20, 20, pattern(7));
+        ArenaSnapshot resized = ArenaSnapshot.encode(20, 21, 20, pattern(6));
+
+        assertEquals(first.getContentHash(), same.getContentHash());
+        assertNotEquals(first.getContentHash(), different.getContentHash());
+        assertNotEquals(first.getContentHash(), resized.getContentHash());
+    }
+
+    @Test
+    void heapSnapshotsStartAtTheMinimumCorner() {
+        ArenaSnapshot snapshot = ArenaSnapshot.encode(37, 20, 18, pattern(5));
+
+        assertEquals(0, snapshot.getOffsetX());
+        assertEquals(0, snapshot.getOffsetY());
+        assertEquals(0, snapshot.getOffsetZ());
+        assertEquals(snapshot.getContentHash(), ArenaSnapshot.encode(37, 20, 18, pattern(5)).getContentHash());
+    }
+
+    @Test
+    void mappedFileDecodesLikeTheHeapSnapshot() throws IOException {
+        // Starts mid-section on every axis and ends mid-section too
+        File file = directory.resolve("arena.sections").toFile();
+        ArenaSnapshot.BlockSource source = pattern(9);
+        ArenaSnapshot.write(file, 7, 0, 9, 30, 33, 25, source);
+
+        assertTrue(ArenaSnapshot.isCurrentFormat(file));
+        ArenaSnapshot mapped = ArenaSnapshot.map(file, states::get);
+        assertTrue(mapped.isDiskBacked());
+        assertEquals(file.length(), mapped.getDiskSize());
+        assertEquals(7, mapped.getOffsetX());
+        assertEquals(0, mapped.getOffsetY());
+        assertEquals(9, mapped.getOffsetZ());
+        assertEquals(30, mapped.getSizeX());
+        assertEquals(33, mapped.getSizeY());
+        assertEquals(25, mapped.getSizeZ());
+        assertEquals(9, mapped.getPaletteSize());
+        assertMatches(source, mapped);
+        assertMatches(source, ArenaSnapshot.encode(30, 33, 25, source));
+    }
+
+    @Test
+    void mappedFilesAreIdentifiedByTheirAlignment() throws IOException {
+        File first = directory.resolve("first.sections").toFile();
+        File same = directory.resolve("same.sections").toFile();
+        File shifted = directory.resolve("shifted.sections").toFile();
+        ArenaSnapshot.write(first, 3, 0, 3, 20, 20, 20, pattern(6));
+        ArenaSnapshot.write(same, 3, 0, 3, 20, 20, 20, pattern(6));
+        ArenaSnapshot.write(shifted, 4, 0, 3, 20, 20, 20, pattern(6));
+
+        String hash = ArenaSnapshot.map(first, states::get).getContentHash();
+        assertEquals(hash, ArenaSnapshot.map(same, states::get).getContentHash());
+        assertNotEquals(hash, ArenaSnapshot.map(shifted, states::get).getContentHash());
+    }
+
+    @Test
+    void mappedFileOfAUniformArena() throws IOException {
+        File file = directory.resolve("uniform.sections").toFile();
+        ArenaSnapshot.BlockSource source = (x, y, z) -> blocks[3].toBaseBlock();
+        ArenaSnapshot.write(file, 0, 15, 0, 17, 2, 17, source);
+
+        assertMatches(source, ArenaSnapshot.map(file, states::get));
+    }
+
+    @Test
+    void rejectsFilesInAnotherFormat() throws IOException {
+        File file = directory.resolve("other.sections").toFile();
+        Files.write(file.toPath(), new byte[64]);
+
+        assertFalse(ArenaSnapshot.isCurrentFormat(file));
+        assertThrows(IOException.class, () -> ArenaSnapshot.map(file, states::get));
+    }
+
+    /**
+     * Blocks cycling through the first {@code count} states, differently along each axis
+     */
+    private ArenaSnapshot.BlockSource pattern(int count) {
+        return (x, y, z) -> blocks[Math.floorMod(x * 7 + y * 3 + z * 11 + x * z, count)].toBaseBlock();
+    }
+
+    private static void assertMatches(ArenaSnapshot.BlockSource expected, ArenaSnapshot snapshot) {
+        for (int x = 0; x < snapshot.getSizeX(); x++) {
+            for (int y = 0; y < snapshot.getSizeY(); y++) {
+                for (int z = 0; z < snapshot.getSizeZ(); z++) {
+                    assertSame(expected.getBlock(x, y, z).toImmutableState(), snapshot.getBlock(x, y, z).toImmutableState(),
+                            "Block at " + x + " " + y + " " + z);
+                }
+            }
+        }
+    }
+
+    private BlockState state(String id) {
+        BlockState state = mock(BlockState.class);
+        BaseBlock block = mock(BaseBlock.class);
+        when(state.getAsString()).thenReturn(id);
+        when(state.toBaseBlock()).thenReturn(block);
+        when(block.toImmutableState()).thenReturn(state);
+        states.put(id, state);
+        return state;
+    }
+}
@@ -0,0 +1,105 @@
+package com.ezduels.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageTemplateTest {
+
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+    private static final PlainTextComponentSerializer PLAIN = PlainTextComponentSerializer.plainText();
+
+    @Test
+    void templateWithoutPlaceholdersIsShared() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "<green>Duel accepted!</green>", List.of());
+
+        assertSame(template.render(), template.render());
+        assertEquals("Duel accepted!", PLAIN.serialize(template.render()));
+    }
+
+    @Test
+    void fillsSlotsInPlaceholderOrder() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE,
+                "<gold>{winner}</gold> beat <red>{loser}</red> in {seconds}s", List.of("winner", "loser", "seconds"));
+
+        assertEquals("Alex beat Sam in 42s", PLAIN.serialize(template.render("Alex", "Sam", 42)));
+    }
+
+    @Test
+    void fillsEveryUseOfAPlaceholder() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "{player} vs {player}", List.of("player"));
+
+        assertEquals("Alex vs Alex", PLAIN.serialize(template.render("Alex")));
+    }
+
+    @Test
+    void leavesUnknownPlaceholdersAsText() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "Hi {player}, {other}", List.of("player"));
+
+        assertEquals("Hi Alex, {other}", PLAIN.serialize(template.render("Alex")));
+    }
+
+    @Test
+    void valuesAreNotParsedAsMiniMessage() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "<gray>{player}</gray> joined", List.of("player"));
+
+        assertEquals("<red>Alex</red> joined", PLAIN.serialize(template.render("<red>Alex</red>")));
+    }
+
+    @Test
+    void fillsHoverTextAndClickCommands() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE,
+                "<click:run_command:'/duel accept {player}'><hover:show_text:'<gray>Accept {player}'>[Accept]</hover></click>",
+                List.of("player"));
+
+        Component rendered = template.render("Alex");
+        List<String> clicks = new ArrayList<>();
+        List<String> hovers = new ArrayList<>();
+        collectEvents(rendered, clicks, hovers);
+        assertEquals("[Accept]", PLAIN.serialize(rendered));
+        assertEquals(List.of("/duel accept Alex"), clicks.stream().distinct().toList());
+        assertEquals(List.of("Accept Alex"), hovers.stream().distinct().toList());
+    }
+
+    @Test
+    void renderingLeavesTheTemplateUntouched() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "<yellow>Arena {arena} is free", List.of("arena"));
+
+        Component first = template.render("sky1");
+        Component second = template.render("sky2");
+        assertEquals("Arena sky1 is free", PLAIN.serialize(first));
+        assertEquals("Arena sky2 is free", PLAIN.serialize(second));
+    }
+
+    @Test
+    void rejectsTheWrongNumberOfValues() {
+        MessageTemplate template = MessageTemplate.compile(MINI_MESSAGE, "{a} and {b}", List.of("a", "b"));
+
+        assertThrows(IllegalArgumentException.class, () -> template.render("only one"));
+        assertThrows(IllegalArgumentException.class, () -> template.render("one", "two", "three"));
+    }
+
+    private static void collectEvents(Component component, List<String> clicks, List<String> hovers) {
+        ClickEvent click = component.clickEvent();
+        if (click != null) {
+            clicks.add(click.value());
+        }
+        HoverEvent<?> hover = component.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            hovers.add(PLAIN.serialize((Component) hover.value()));
+        }
+        for (Component child : component.children()) {
+            collectEvents(child, clicks, hovers);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ezduels.model;
+
+import com.ezduels.model.Duel.DuelState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuelStateMachineTest {
+
+    private DuelStateMachine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new DuelStateMachine();
+    }
+
+    @Test
+    void followsTheDuelLifecycle() {
+        Duel duel = newDuel();
+        assertTrue(machine.transition(duel, DuelState.CREATING, DuelState.PENDING));
+        assertTrue(machine.transition(duel, DuelState.PENDING, DuelState.SETTING_UP));
+        assertTrue(machine.transition(duel, DuelState.SETTING_UP, DuelState.COUNTDOWN));
+        assertTrue(machine.transition(duel, DuelState.COUNTDOWN, DuelState.QUEUED));
+        assertTrue(machine.transition(duel, DuelState.QUEUED, DuelState.STARTING));
+        assertTrue(machine.transition(duel, DuelState.STARTING, DuelState.FIGHTING));
+        assertTrue(machine.transition(duel, DuelState.FIGHTING, DuelState.FINISHED));
+
+        assertEquals(DuelState.FINISHED, duel.getState());
+        assertEquals(0, machine.getRejectedCount());
+    }
+
+    @Test
+    void rejectsAndCountsIllegalTransitions() {
+        Duel duel = newDuel();
+        assertFalse(machine.transition(duel, DuelState.CREATING, DuelState.FIGHTING));
+        assertFalse(machine.transition(duel, DuelState.CREATING, DuelState.FIGHTING));
+        assertFalse(machine.transition(duel, DuelState.FINISHED));
+
+        assertEquals(DuelState.CREATING, duel.getState());
+        assertEquals(3, machine.getRejectedCount());
+        assertEquals(Map.of("CREATING -> FIGHTING", 2L, "CREATING -> FINISHED", 1L), machine.getRejectedTransitions());
+        assertEquals(List.of("CREATING -> FIGHTING", "CREATING -> FINISHED"),
+                new ArrayList<>(machine.getRejectedTransitions().keySet())); // Most frequent first
+    }
+
+    @Test
+    void rejectsTransitionsFromAStateTheDuelIsNotIn() {
+        Duel duel = advance(newDuel(), DuelState.PENDING);
+
+        assertFalse(machine.transition(duel, DuelState.CREATING, DuelState.CANCELLED));
+        assertEquals(DuelState.PENDING, duel.getState());
+        assertEquals(Map.of("PENDING -> CANCELLED", 1L), machine.getRejectedTransitions());
+    }
+
+    @Test
+    void endedDuelsStayEnded() {
+        Duel duel = advance(newDuel(), DuelState.PENDING, DuelState.CANCELLED);
+
+        for (DuelState state : DuelState.values()) {
+            assertFalse(DuelStateMachine.isLegal(DuelState.CANCELLED, state));
+            assertFalse(DuelStateMachine.isLegal(DuelState.FINISHED, state));
+            assertFalse(machine.transition(duel, state));
+        }
+        assertEquals(DuelState.CANCELLED, duel.getState());
+    }
+
+    @Test
+    void cancelWorksFromAnyActiveState() {
+        for (DuelState state : DuelState.values()) {
+            if (state != DuelState.FINISHED && state != DuelState.CANCELLED) {
+                assertTrue(DuelStateMachine.isLegal(state, DuelState.CANCELLED), state.name());
+            }
+        }
+        Duel duel = advance(newDuel(), DuelState.PENDING, DuelState.SETTING_UP, DuelState.COUNTDOWN);
+        assertTrue(machine.transition(duel, DuelState.CANCELLED));
+        assertEquals(DuelState.CANCELLED, duel.getState());
+    }
+
+    @Test
+    void fightsOnlyStartThroughStarting() {
+        assertFalse(DuelStateMachine.isLegal(DuelState.COUNTDOWN, DuelState.FIGHTING));
+        assertFalse(DuelStateMachine.isLegal(DuelState.QUEUED, DuelState.FIGHTING));
+        assertTrue(DuelStateMachine.isLegal(DuelState.STARTING, DuelState.FIGHTING));
+    }
+
+    @Test
+    void runsExitThenEnterHooksForTheWinnerOnly() {
+        List<String> calls = new ArrayList<>();
+        machine.onExit(DuelState.FIGHTING, duel -> calls.add("exit FIGHTING"));
+        machine.onEnter(DuelState.FINISHED, duel -> calls.add("enter FINISHED"));
+        machine.onEnter(DuelState.CANCELLED, duel -> calls.add("enter CANCELLED"));
+        Duel duel = advance(newDuel(), DuelState.PENDING, DuelState.SETTING_UP, DuelState.COUNTDOWN,
+                DuelState.STARTING, DuelState.FIGHTING);
+        calls.clear();
+
+        assertTrue(machine.transition(duel, DuelState.FIGHTING, DuelState.FINISHED));
+        assertFalse(machine.transition(duel, DuelState.FIGHTING, DuelState.CANCELLED));
+        assertEquals(List.of("exit FIGHTING", "enter FINISHED"), calls);
+    }
+
+    @Test
+    void exactlyOneOfTwoRacingTransitionsWins() throws Exception {
+        int rounds = 500;
+        AtomicInteger entered = new AtomicInteger();
+        machine.onEnter(DuelState.FINISHED, duel -> entered.incrementAndGet());
+        machine.onEnter(DuelState.CANCELLED, duel -> entered.incrementAndGet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < rounds; i++) {
+                Duel duel = advance(newDuel(), DuelState.PENDING, DuelState.SETTING_UP, DuelState.COUNTDOWN,
+                        DuelState.STARTING, DuelState.FIGHTING);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> finish = executor.submit(() -> {
+                    start.await();
+                    return machine.transition(duel, DuelState.FIGHTING, DuelState.FINISHED);
+                });
+                Future<Boolean> cancel = executor.submit(() -> {
+                    start.await();
+                    return machine.transition(duel, DuelState.CANCELLED);
+                });
+                start.countDown();
+
+                boolean finished = finish.get();
+                boolean cancelled = cancel.get();
+                assertNotEquals(finished, cancelled);
+                assertEquals(finished ? DuelState.FINISHED : DuelState.CANCELLED, duel.getState());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(rounds, entered.get());
+        assertEquals(rounds, machine.getRejectedCount());
+    }
+
+    private static Duel newDuel() {
+        return new Duel(null, null); // Players are never touched by the state machine
+    }
+
+    /**
+     * Move a duel through the given states, each of which must be legal
+     */
+    private Duel advance(Duel duel, DuelState... states) {
+        for (DuelState state : states) {
+            assertTrue(machine.transition(duel, duel.getState(), state));
+        }
+        return duel;
+    }
+}
@@ -0,0 +1,222 @@
+package com.ezduels.timer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private TimerWheel wheel;
+    private int tick; // Ticks run so far
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimerWheel(null); // Only start() and failing tasks need the plugin
+        tick = 0;
+    }
+
+    @Test
+    void runsOnceOnTheDueTick() {
+        List<Integer> runs = new ArrayList<>();
+        wheel.runLater(null, 3, () -> runs.add(tick));
+
+        advance(10);
+        assertEquals(List.of(3), runs);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void zeroDelayRunsOnTheNextTick() {
+        List<Integer> runs = new ArrayList<>();
+        wheel.runLater(null, 0, () -> runs.add(tick));
+
+        advance(2);
+        assertEquals(List.of(1), runs);
+    }
+
+    @Test
+    void longDelaysWaitWholeTurnsOfTheWheel() {
+        List<Integer> runs = new ArrayList<>();
+        for (int delay : new int[] {511, 512, 513, 1024, 1500, 2049}) {
+            wheel.runLater(null, delay, () -> runs.add(tick));
+        }
+
+        advance(2100);
+        assertEquals(List.of(511, 512, 513, 1024, 1500, 2049), runs);
+    }
+
+    @Test
+    void repeatsEveryPeriodUntilCancelled() {
+        List<Integer> runs = new ArrayList<>();
+        TimerTask task = wheel.runTimer(null, 2, 5, () -> runs.add(tick));
+
+        advance(17);
+        assertEquals(List.of(2, 7, 12, 17), runs);
+        assertTrue(task.isScheduled());
+
+        task.cancel();
+        advance(20);
+        assertEquals(4, runs.size());
+        assertFalse(task.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void periodLongerThanTheWheelKeepsItsPace() {
+        List<Integer> runs = new ArrayList<>();
+        wheel.runTimer(null, 600, 600, () -> runs.add(tick));
+
+        advance(1800);
+        assertEquals(List.of(600, 1200, 1800), runs);
+    }
+
+    @Test
+    void taskCancelledByAnotherDueTheSameTickDoesNotRun() {
+        int[] runs = new int[1];
+        TimerTask[] tasks = new TimerTask[2];
+        for (int i = 0; i < 2; i++) {
+            int other = 1 - i;
+            tasks[i] = new TimerTask() {
+                @Override
+                public void run() {
+                    runs[0]++;
+                    tasks[other].cancel();
+                }
+            };
+        }
+        tasks[0].runLater(wheel, null, 4);
+        tasks[1].runLater(wheel, null, 4);
+
+        advance(10);
+        assertEquals(1, runs[0]);
+        assertEquals(0, wheel.size());
+        assertFalse(tasks[0].isScheduled());
+        assertFalse(tasks[1].isScheduled());
+    }
+
+    @Test
+    void taskRescheduledByAnotherDueTheSameTickKeepsTheWheelIntact() {
+        List<String> runs = new ArrayList<>();
+        TimerTask[] countdown = new TimerTask[1];
+        wheel.runLater(null, 9, () -> runs.add("waiting " + tick)); // Shares the slot the countdown moves to
+        // Tasks due the same tick run in the order they were scheduled, so this restarts the countdown first
+        wheel.runLater(null, 4, () -> {
+            countdown[0].cancel();
+            countdown[0].runLater(wheel, null, 5);
+        });
+        countdown[0] = wheel.runLater(null, 4, () -> runs.add("countdown " + tick));
+        wheel.runLater(null, 4, () -> runs.add("other " + tick));
+
+        advance(4);
+        assertEquals(List.of("other 4"), runs);
+        assertEquals(2, wheel.size());
+        advance(10);
+        assertEquals(3, runs.size());
+        assertTrue(runs.containsAll(List.of("waiting 9", "countdown 9")));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void repeatingTaskCancellingItselfStops() {
+        int[] runs = new int[1];
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                if (++runs[0] == 3) {
+                    cancel();
+                }
+            }
+        }.runTimer(wheel, null, 1, 1);
+
+        advance(10);
+        assertEquals(3, runs[0]);
+        assertFalse(task.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void taskScheduledWhileFiringWaitsForItsTick() {
+        List<Integer> runs = new ArrayList<>();
+        wheel.runLater(null, 2, () -> wheel.runLater(null, 1, () -> runs.add(tick)));
+
+        advance(2);
+        assertTrue(runs.isEmpty());
+        advance(1);
+        assertEquals(List.of(3), runs);
+    }
+
+    @Test
+    void groupCancelsAllItsTasks() {
+        TimerGroup group = new TimerGroup();
+        int[] runs = new int[1];
+        wheel.runLater(group, 5, () -> runs[0]++);
+        wheel.runTimer(group, 1, 1, () -> runs[0]++);
+        wheel.runLater(null, 5, () -> runs[0] += 100);
+        assertEquals(2, group.size());
+
+        group.cancelAll();
+        advance(10);
+        assertEquals(100, runs[0]);
+        assertEquals(0, group.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void finishedTasksLeaveTheirGroup() {
+        TimerGroup group = new TimerGroup();
+        wheel.runLater(group, 1, () -> { });
+        wheel.runLater(group, 3, () -> { });
+
+        advance(1);
+        assertEquals(1, group.size());
+        advance(2);
+        assertEquals(0, group.size());
+    }
+
+    @Test
+    void cancelledTaskCanBeScheduledAgain() {
+        int[] runs = new int[1];
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                runs[0]++;
+            }
+        }.runLater(wheel, null, 2);
+
+        assertThrows(IllegalStateException.class, () -> task.runLater(wheel, null, 2));
+        task.cancel();
+        task.runLater(wheel, null, 2);
+
+        advance(5);
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    void shutdownDropsEveryTask() {
+        TimerGroup group = new TimerGroup();
+        int[] runs = new int[1];
+        for (int delay = 1; delay < 2000; delay += 7) {
+            wheel.runLater(delay % 2 == 0 ? group : null, delay, () -> runs[0]++);
+        }
+
+        wheel.shutdown();
+        advance(2000);
+        assertEquals(0, runs[0]);
+        assertEquals(0, wheel.size());
+        assertEquals(0, group.size());
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            tick++;
+            wheel.tick();
+        }
+    }
+}